@@ -0,0 +1,459 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+final class SnapshotSupportGenerator {
+
+	static final String SUFFIX = "_SnapshotSupport";
+
+	private static final Set<String> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList("java.lang.String",
+			"java.lang.Integer", "java.lang.Long", "java.lang.Short", "java.lang.Byte", "java.lang.Character",
+			"java.lang.Boolean", "java.lang.Double", "java.lang.Float", "java.math.BigInteger", "java.math.BigDecimal",
+			"java.util.UUID"));
+
+	// mirrors DiffUtils#isPrimitiveOrWrapper so generated diffs report the same keys
+	private static final Set<String> DIFF_LEAF_TYPES = new HashSet<>(Arrays.asList("java.lang.String",
+			"java.lang.Integer", "java.lang.Double", "java.lang.Boolean", "java.lang.Character", "java.lang.Byte",
+			"java.lang.Short", "java.lang.Long", "java.lang.Float"));
+
+	private final Elements elements;
+
+	private final Types types;
+
+	private final TypeElement type;
+
+	private final String packageName;
+
+	private final String simpleName;
+
+	SnapshotSupportGenerator(ProcessingEnvironment processingEnv, TypeElement type) {
+		this.elements = processingEnv.getElementUtils();
+		this.types = processingEnv.getTypeUtils();
+		this.type = type;
+		this.packageName = this.elements.getPackageOf(type).getQualifiedName().toString();
+		this.simpleName = supportSimpleName(type);
+	}
+
+	String getQualifiedName() {
+		return this.packageName.isEmpty() ? this.simpleName : this.packageName + "." + this.simpleName;
+	}
+
+	String generate() {
+		validateType();
+		List<Property> properties = collectProperties();
+		String target = this.type.getQualifiedName().toString();
+		StringBuilder source = new StringBuilder();
+		if (!this.packageName.isEmpty()) {
+			source.append("package ").append(this.packageName).append(";\n\n");
+		}
+		source.append("public final class ")
+			.append(this.simpleName)
+			.append(" implements com.therepanic.snapshotter.SnapshotSupport<")
+			.append(target)
+			.append("> {\n\n");
+		source.append("\tpublic static final ")
+			.append(this.simpleName)
+			.append(" INSTANCE = new ")
+			.append(this.simpleName)
+			.append("();\n\n");
+
+		source.append("\t@Override\n\tpublic ").append(target).append(" deepClone(").append(target).append(" source) {\n");
+		source.append("\t\tif (source == null) {\n\t\t\treturn null;\n\t\t}\n");
+		source.append("\t\t").append(target).append(" copy = new ").append(target).append("();\n");
+		for (Property property : properties) {
+			appendCopy(source, property);
+		}
+		source.append("\t\treturn copy;\n\t}\n\n");
+
+		source.append("\t@Override\n\tpublic void restore(")
+			.append(target)
+			.append(" source, ")
+			.append(target)
+			.append(" target) {\n");
+		for (Property property : properties) {
+			source.append("\t\t").append(property.write("target", property.read("source"))).append('\n');
+		}
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n\tpublic void diff(String prefix, ")
+			.append(target)
+			.append(" first, ")
+			.append(target)
+			.append(" second, java.util.Map<String, String> differences) {\n");
+		for (Property property : properties) {
+			appendDiff(source, property);
+		}
+		source.append("\t}\n\n}\n");
+		return source.toString();
+	}
+
+	private void validateType() {
+		for (Element current = this.type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+			TypeElement currentType = (TypeElement) current;
+			if (currentType.getModifiers().contains(Modifier.PRIVATE)) {
+				throw new UnsupportedElementException(this.type, "@Snapshottable classes must not be private");
+			}
+			if (currentType.getNestingKind() == NestingKind.MEMBER
+					&& !currentType.getModifiers().contains(Modifier.STATIC)) {
+				throw new UnsupportedElementException(this.type, "@Snapshottable nested classes must be static");
+			}
+		}
+		if (this.type.getModifiers().contains(Modifier.ABSTRACT)) {
+			throw new UnsupportedElementException(this.type, "@Snapshottable classes must not be abstract");
+		}
+		if (!this.type.getTypeParameters().isEmpty()) {
+			throw new UnsupportedElementException(this.type, "@Snapshottable classes must not be generic");
+		}
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(this.type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return;
+			}
+		}
+		throw new UnsupportedElementException(this.type,
+				"@Snapshottable classes must declare a non-private no-arg constructor");
+	}
+
+	private List<Property> collectProperties() {
+		List<Property> properties = new ArrayList<>();
+		DeclaredType declaredType = (DeclaredType) this.type.asType();
+		TypeElement current = this.type;
+		while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				Set<Modifier> modifiers = field.getModifiers();
+				if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+					continue;
+				}
+				if (modifiers.contains(Modifier.FINAL)) {
+					throw new UnsupportedElementException(field,
+							"Final fields cannot be restored; make the field non-final or transient");
+				}
+				TypeMirror fieldType = this.types.asMemberOf(declaredType, field);
+				properties.add(createProperty(current, field, fieldType));
+			}
+			TypeMirror superclass = current.getSuperclass();
+			current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) this.types.asElement(superclass)
+					: null;
+		}
+		return properties;
+	}
+
+	private Property createProperty(TypeElement owner, VariableElement field, TypeMirror fieldType) {
+		String name = field.getSimpleName().toString();
+		if (isAccessible(field)) {
+			String cast = owner == this.type ? null : owner.getQualifiedName().toString();
+			return new Property(name, fieldType, cast, null, null);
+		}
+		String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		String getter = null;
+		String setter = null;
+		for (ExecutableElement method : ElementFilter.methodsIn(this.elements.getAllMembers(this.type))) {
+			if (!isAccessible(method) || method.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			String methodName = method.getSimpleName().toString();
+			if (method.getParameters().isEmpty()
+					&& (methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized))) {
+				getter = methodName;
+			}
+			else if (method.getParameters().size() == 1 && methodName.equals("set" + capitalized)) {
+				setter = methodName;
+			}
+		}
+		if (getter == null || setter == null) {
+			throw new UnsupportedElementException(field,
+					"Field " + name + " is not accessible; make it non-private or add a getter and a setter");
+		}
+		return new Property(name, fieldType, null, getter, setter);
+	}
+
+	private boolean isAccessible(Element element) {
+		Set<Modifier> modifiers = element.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		return modifiers.contains(Modifier.PUBLIC)
+				|| this.elements.getPackageOf(element).getQualifiedName().contentEquals(this.packageName);
+	}
+
+	private void appendCopy(StringBuilder source, Property property) {
+		String value = property.read("source");
+		String expression = copyExpression(property.type, value);
+		if (expression != null) {
+			source.append("\t\t").append(property.write("copy", expression)).append('\n');
+			return;
+		}
+		String collection = collectionImplementation(property.type);
+		if (collection == null) {
+			throw new UnsupportedElementException(this.type, "Field " + property.name + " of type " + property.type
+					+ " is not supported; annotate its class with @Snapshottable or make the field transient");
+		}
+		List<? extends TypeMirror> arguments = ((DeclaredType) property.type).getTypeArguments();
+		boolean map = arguments.size() == 2;
+		String[] elementTypes = new String[arguments.size()];
+		String[] elementCopies = new String[arguments.size()];
+		for (int i = 0; i < arguments.size(); i++) {
+			TypeMirror argument = upperBound(arguments.get(i));
+			String variable = map ? (i == 0 ? "entry.getKey()" : "entry.getValue()") : "element";
+			elementTypes[i] = argument.toString();
+			elementCopies[i] = copyExpression(argument, variable);
+			if (elementCopies[i] == null) {
+				throw new UnsupportedElementException(this.type, "Field " + property.name + " of type "
+						+ property.type + " has unsupported elements; annotate them with @Snapshottable");
+			}
+		}
+		String elementType = String.join(", ", elementTypes);
+		source.append("\t\t{\n");
+		source.append("\t\t\t").append(property.type).append(" value = ").append(value).append(";\n");
+		source.append("\t\t\tif (value == null) {\n");
+		source.append("\t\t\t\t").append(property.write("copy", "null")).append('\n');
+		source.append("\t\t\t}\n\t\t\telse {\n");
+		source.append("\t\t\t\t")
+			.append(collection)
+			.append('<')
+			.append(elementType)
+			.append("> elements = new ")
+			.append(collection)
+			.append("<>();\n");
+		if (map) {
+			source.append("\t\t\t\tfor (java.util.Map.Entry<? extends ")
+				.append(elementTypes[0])
+				.append(", ? extends ")
+				.append(elementTypes[1])
+				.append("> entry : value.entrySet()) {\n");
+			source.append("\t\t\t\t\telements.put(")
+				.append(elementCopies[0])
+				.append(", ")
+				.append(elementCopies[1])
+				.append(");\n");
+		}
+		else {
+			source.append("\t\t\t\tfor (").append(elementType).append(" element : value) {\n");
+			source.append("\t\t\t\t\telements.add(").append(elementCopies[0]).append(");\n");
+		}
+		source.append("\t\t\t\t}\n");
+		source.append("\t\t\t\t").append(property.write("copy", "elements")).append('\n');
+		source.append("\t\t\t}\n\t\t}\n");
+	}
+
+	private String copyExpression(TypeMirror type, String value) {
+		if (isImmutable(type)) {
+			return value;
+		}
+		if (type.getKind() == TypeKind.ARRAY) {
+			TypeMirror component = ((ArrayType) type).getComponentType();
+			if (isImmutable(component)) {
+				return "(" + value + " == null ? null : " + value + ".clone())";
+			}
+			return null;
+		}
+		if (type.getKind() == TypeKind.DECLARED) {
+			TypeElement element = (TypeElement) this.types.asElement(type);
+			if (isSnapshottable(element)) {
+				String supportPackage = this.elements.getPackageOf(element).getQualifiedName().toString();
+				String support = supportPackage.isEmpty() ? supportSimpleName(element)
+						: supportPackage + "." + supportSimpleName(element);
+				return support + ".INSTANCE.deepClone(" + value + ")";
+			}
+		}
+		return null;
+	}
+
+	private String collectionImplementation(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		String name = ((TypeElement) this.types.asElement(type)).getQualifiedName().toString();
+		int arguments = ((DeclaredType) type).getTypeArguments().size();
+		switch (name) {
+			case "java.util.Collection":
+			case "java.util.List":
+			case "java.util.ArrayList":
+				return arguments == 1 ? "java.util.ArrayList" : null;
+			case "java.util.LinkedList":
+				return arguments == 1 ? "java.util.LinkedList" : null;
+			case "java.util.Set":
+			case "java.util.LinkedHashSet":
+				return arguments == 1 ? "java.util.LinkedHashSet" : null;
+			case "java.util.HashSet":
+				return arguments == 1 ? "java.util.HashSet" : null;
+			case "java.util.Map":
+			case "java.util.LinkedHashMap":
+				return arguments == 2 ? "java.util.LinkedHashMap" : null;
+			case "java.util.HashMap":
+				return arguments == 2 ? "java.util.HashMap" : null;
+			default:
+				return null;
+		}
+	}
+
+	private TypeMirror upperBound(TypeMirror type) {
+		if (type.getKind() == TypeKind.WILDCARD) {
+			TypeMirror bound = ((WildcardType) type).getExtendsBound();
+			return bound != null ? bound : this.elements.getTypeElement("java.lang.Object").asType();
+		}
+		return type;
+	}
+
+	private void appendDiff(StringBuilder source, Property property) {
+		String first = property.read("first");
+		String second = property.read("second");
+		String key = "prefix + \"" + property.name + "\"";
+		TypeKind kind = property.type.getKind();
+		if (kind.isPrimitive()) {
+			String changed = kind == TypeKind.DOUBLE ? "Double.compare(" + first + ", " + second + ") != 0"
+					: kind == TypeKind.FLOAT ? "Float.compare(" + first + ", " + second + ") != 0"
+							: first + " != " + second;
+			source.append("\t\tif (").append(changed).append(") {\n");
+			source.append("\t\t\tdifferences.put(")
+				.append(key)
+				.append(", ")
+				.append(second)
+				.append(" + \" -> \" + ")
+				.append(first)
+				.append(");\n");
+			source.append("\t\t}\n");
+			return;
+		}
+		source.append("\t\t{\n");
+		source.append("\t\t\tObject firstValue = ").append(first).append(";\n");
+		source.append("\t\t\tObject secondValue = ").append(second).append(";\n");
+		source.append("\t\t\tif (!java.util.Objects.equals(firstValue, secondValue)) {\n");
+		if (kind == TypeKind.DECLARED && DIFF_LEAF_TYPES.contains(qualifiedName(property.type))) {
+			source.append("\t\t\t\tdifferences.put(").append(key).append(", secondValue + \" -> \" + firstValue);\n");
+		}
+		else {
+			source.append("\t\t\t\tcom.therepanic.snapshotter.DiffUtils.diff(prefix + \"")
+				.append(property.name)
+				.append(".\", firstValue, secondValue, differences);\n");
+		}
+		source.append("\t\t\t}\n\t\t}\n");
+	}
+
+	private boolean isImmutable(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return true;
+		}
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		Element element = this.types.asElement(type);
+		return element.getKind() == ElementKind.ENUM || IMMUTABLE_TYPES.contains(qualifiedName(type));
+	}
+
+	private boolean isSnapshottable(TypeElement element) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (annotationType.getQualifiedName().contentEquals(SnapshottableProcessor.SNAPSHOTTABLE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String qualifiedName(TypeMirror type) {
+		return ((TypeElement) this.types.asElement(type)).getQualifiedName().toString();
+	}
+
+	private String supportSimpleName(TypeElement element) {
+		String binaryName = this.elements.getBinaryName(element).toString();
+		int packageEnd = binaryName.lastIndexOf('.');
+		return binaryName.substring(packageEnd + 1).replace('$', '_') + SUFFIX;
+	}
+
+	private static final class Property {
+
+		private final String name;
+
+		private final TypeMirror type;
+
+		private final String owner;
+
+		private final String getter;
+
+		private final String setter;
+
+		private Property(String name, TypeMirror type, String owner, String getter, String setter) {
+			this.name = name;
+			this.type = type;
+			this.owner = owner;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		private String read(String instance) {
+			if (this.getter != null) {
+				return instance + "." + this.getter + "()";
+			}
+			return qualify(instance) + "." + this.name;
+		}
+
+		private String write(String instance, String value) {
+			if (this.setter != null) {
+				return instance + "." + this.setter + "(" + value + ");";
+			}
+			return qualify(instance) + "." + this.name + " = " + value + ";";
+		}
+
+		private String qualify(String instance) {
+			return this.owner != null ? "((" + this.owner + ") " + instance + ")" : instance;
+		}
+
+	}
+
+	static final class UnsupportedElementException extends RuntimeException {
+
+		private final transient Element element;
+
+		UnsupportedElementException(Element element, String message) {
+			super(message);
+			this.element = element;
+		}
+
+		Element getElement() {
+			return this.element;
+		}
+
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+@SupportedAnnotationTypes(SnapshottableProcessor.SNAPSHOTTABLE)
+public class SnapshottableProcessor extends AbstractProcessor {
+
+	static final String SNAPSHOTTABLE = "com.therepanic.snapshotter.Snapshottable";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS) {
+					error(element, "@Snapshottable can only be applied to classes");
+					continue;
+				}
+				generate((TypeElement) element);
+			}
+		}
+		return true;
+	}
+
+	private void generate(TypeElement type) {
+		SnapshotSupportGenerator generator = new SnapshotSupportGenerator(this.processingEnv, type);
+		String source;
+		try {
+			source = generator.generate();
+		}
+		catch (SnapshotSupportGenerator.UnsupportedElementException e) {
+			error(e.getElement(), e.getMessage());
+			return;
+		}
+		try {
+			JavaFileObject file = this.processingEnv.getFiler().createSourceFile(generator.getQualifiedName(), type);
+			try (Writer writer = file.openWriter()) {
+				writer.write(source);
+			}
+		}
+		catch (IOException e) {
+			error(type, "Cannot write snapshot support: " + e.getMessage());
+		}
+	}
+
+	private void error(Element element, String message) {
+		this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.processor;
+
+import com.therepanic.snapshotter.SnapshotSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshottableProcessorTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static final String ADDRESS = "package sample;\n" + "@com.therepanic.snapshotter.Snapshottable\n"
+			+ "public class Address {\n" + "\tpublic String city;\n" + "\tint zip;\n" + "}\n";
+
+	private static final String PERSON = "package sample;\n" + "import java.util.*;\n"
+			+ "@com.therepanic.snapshotter.Snapshottable\n" + "public class Person {\n" + "\tprivate String name;\n"
+			+ "\tdouble score;\n" + "\tAddress address;\n" + "\tList<Address> previous = new ArrayList<>();\n"
+			+ "\tMap<String, Integer> counters;\n" + "\tint[] values;\n" + "\ttransient Object cache;\n"
+			+ "\tpublic String getName() { return name; }\n"
+			+ "\tpublic void setName(String name) { this.name = name; }\n" + "}\n";
+
+	@Test
+	void generatesCloneRestoreAndDiff() throws Exception {
+		ClassLoader classLoader = compile(ADDRESS, PERSON);
+		Class<?> personType = classLoader.loadClass("sample.Person");
+		Class<?> addressType = classLoader.loadClass("sample.Address");
+		SnapshotSupport<Object> support = support(classLoader, "sample.Person_SnapshotSupport");
+
+		Object person = personType.getDeclaredConstructor().newInstance();
+		Object address = addressType.getDeclaredConstructor().newInstance();
+		addressType.getField("city").set(address, "Paris");
+		personType.getMethod("setName", String.class).invoke(person, "Ann");
+		set(person, "address", address);
+		set(person, "values", new int[] { 1, 2 });
+		set(person, "counters", new HashMap<>(Collections.singletonMap("a", 1)));
+		((List<Object>) get(person, "previous")).add(address);
+
+		Object copy = support.deepClone(person);
+		assertNotSame(person, copy);
+		assertEquals("Ann", personType.getMethod("getName").invoke(copy));
+		assertNotSame(address, get(copy, "address"));
+		assertEquals("Paris", addressType.getField("city").get(get(copy, "address")));
+		assertNotSame(get(person, "values"), get(copy, "values"));
+		assertEquals(Collections.singletonMap("a", 1), get(copy, "counters"));
+		assertNotSame(address, ((List<Object>) get(copy, "previous")).get(0));
+
+		addressType.getField("city").set(get(copy, "address"), "Rome");
+		set(copy, "score", 2.5);
+		Map<String, String> differences = new HashMap<>();
+		support.diff("", copy, person, differences);
+		assertEquals("0.0 -> 2.5", differences.get("score"));
+		assertEquals("Paris -> Rome", differences.get("address.city"));
+
+		Object target = personType.getDeclaredConstructor().newInstance();
+		support.restore(copy, target);
+		assertEquals("Ann", personType.getMethod("getName").invoke(target));
+		assertSame(get(copy, "address"), get(target, "address"));
+	}
+
+	@Test
+	void reportsUnsupportedFields() throws Exception {
+		String source = "package sample;\n" + "@com.therepanic.snapshotter.Snapshottable\n"
+				+ "public class Broken {\n" + "\tprivate String hidden;\n" + "}\n";
+		List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithDiagnostics(source);
+		assertTrue(diagnostics.stream()
+			.anyMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR
+					&& diagnostic.getMessage(null).contains("Field hidden is not accessible")));
+	}
+
+	private ClassLoader compile(String... sources) throws IOException {
+		List<Diagnostic<? extends JavaFileObject>> diagnostics = compileWithDiagnostics(sources);
+		assertTrue(diagnostics.stream().noneMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR),
+				diagnostics.toString());
+		return new URLClassLoader(new URL[] { this.tempDir.resolve("classes").toUri().toURL() },
+				getClass().getClassLoader());
+	}
+
+	private List<Diagnostic<? extends JavaFileObject>> compileWithDiagnostics(String... sources) throws IOException {
+		Path sourceDir = Files.createDirectories(this.tempDir.resolve("src/sample"));
+		Path classesDir = Files.createDirectories(this.tempDir.resolve("classes"));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+				StandardCharsets.UTF_8)) {
+			Path[] files = new Path[sources.length];
+			for (int i = 0; i < sources.length; i++) {
+				String simpleName = sources[i].split("public class ")[1].split(" ")[0];
+				files[i] = Files.write(sourceDir.resolve(simpleName + ".java"),
+						sources[i].getBytes(StandardCharsets.UTF_8));
+			}
+			Iterable<? extends JavaFileObject> units = fileManager
+				.getJavaFileObjects(Arrays.stream(files).map(Path::toFile).toArray(File[]::new));
+			List<String> options = Arrays.asList("-d", classesDir.toString(), "-s", classesDir.toString(),
+					"-classpath", System.getProperty("java.class.path"));
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+					units);
+			task.setProcessors(Collections.singletonList(new SnapshottableProcessor()));
+			task.call();
+		}
+		return diagnostics.getDiagnostics();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SnapshotSupport<Object> support(ClassLoader classLoader, String name) throws Exception {
+		return (SnapshotSupport<Object>) classLoader.loadClass(name).getField("INSTANCE").get(null);
+	}
+
+	private static Object get(Object instance, String name) throws ReflectiveOperationException {
+		Field field = instance.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(instance);
+	}
+
+	private static void set(Object instance, String name, Object value) throws ReflectiveOperationException {
+		Field field = instance.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(instance, value);
+	}
+
+}
@@ -21,42 +21,183 @@
 package com.therepanic.snapshotter;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 public abstract class AbstractFileSnapshotStorage<T> implements SnapshotStorage<T> {
 
+	public static final long MAPPED_LOAD_THRESHOLD = 1024 * 1024;
+
 	private final LinkedHashMap<String, File> snapshots;
 
-	public AbstractFileSnapshotStorage(LinkedHashMap<String, File> snapshots) {
+	private final SnapshotManifest manifest;
+
+	private final DurabilityPolicy durabilityPolicy;
+
+	private final SnapshotLayout layout;
+
+	private final Function<byte[], T> stateDecoder = data -> decode(data).getState();
+
+	public AbstractFileSnapshotStorage(LinkedHashMap<String, File> snapshots, FileStorageOptions options) {
+		// the options are read once, so later changes to them do not reach this storage
 		this.snapshots = snapshots;
+		this.manifest = options.getManifest();
+		this.durabilityPolicy = options.getDurabilityPolicy();
+		this.layout = options.getLayout();
+		if (this.manifest != null) {
+			this.manifest.setDurabilityPolicy(this.durabilityPolicy);
+			this.snapshots.putAll(this.manifest.replay());
+		}
+	}
+
+	public AbstractFileSnapshotStorage(LinkedHashMap<String, File> snapshots) {
+		this(snapshots, FileStorageOptions.defaults());
 	}
 
 	protected abstract byte[] encode(Snapshot<T> snapshot);
 
+	protected void encode(Snapshot<T> snapshot, OutputStream output) throws IOException {
+		output.write(encode(snapshot));
+	}
+
 	protected abstract Snapshot<T> decode(byte[] data);
 
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		// a custom strategy may do more than copy, so it is honoured,
+		// for a plain full copy the encoded form is already an independent copy and the clone can be skipped
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		return new EncodedSnapshot<>(encode(new Snapshot<>(target)), this.stateDecoder);
+	}
+
 	@Override
 	public void save(String name, Snapshot<T> snapshot) {
-		byte[] data = encode(snapshot);
-		File newFile = new File(name);
-		try (FileOutputStream fos = new FileOutputStream(newFile)) {
-			fos.write(data);
+		File newFile = this.layout.resolve(name);
+		Path target = newFile.toPath();
+		// written next to the target and moved over it, so readers never see a torn file
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp-" + Thread.currentThread().getId() + "-"
+				+ Long.toHexString(System.nanoTime()));
+		boolean moved = false;
+		try {
+			if (target.getParent() != null) {
+				Files.createDirectories(target.getParent());
+			}
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				write(snapshot, channel);
+				this.durabilityPolicy.afterWrite(channel);
+			}
+			moveAtomically(temp, target);
+			moved = true;
+			this.durabilityPolicy.afterPublish(target);
 		}
 		catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
-		this.snapshots.put(name, newFile);
+		finally {
+			// serializers wrap I/O failures such as a full disk in their own runtime exceptions
+			if (!moved) {
+				temp.toFile().delete();
+			}
+		}
+		// files are written without the lock, only the index and manifest updates are serialized
+		synchronized (this.snapshots) {
+			this.snapshots.put(name, newFile);
+			if (this.manifest != null) {
+				this.manifest.recordSave(name, newFile);
+				compactManifestIfNeeded();
+			}
+		}
+		syncManifest();
+	}
+
+	private void syncManifest() {
+		// outside the index lock, so concurrent saves can share one manifest sync
+		if (this.manifest != null) {
+			this.manifest.sync();
+		}
+	}
+
+	private void compactManifestIfNeeded() {
+		if (this.manifest.needsCompaction(this.snapshots.size())) {
+			this.manifest.compact(this.snapshots);
+		}
+	}
+
+	private void write(Snapshot<T> snapshot, FileChannel channel) throws IOException {
+		if (snapshot instanceof EncodedSnapshot) {
+			EncodedSnapshot<T> encoded = (EncodedSnapshot<T>) snapshot;
+			if (encoded.getDecoder() == this.stateDecoder) {
+				ByteBuffer data = ByteBuffer.wrap(encoded.getData());
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+				return;
+			}
+			snapshot = new Snapshot<>(encoded.getState());
+		}
+		try (OutputStream output = new ChannelOutputStream(channel)) {
+			encode(snapshot, output);
+		}
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// the buffer may be a mapping that is released once decode returns, so it must not be retained
+	protected Snapshot<T> decode(ByteBuffer buffer) {
+		byte[] data = new byte[buffer.remaining()];
+		buffer.get(data);
+		return decode(data);
 	}
 
 	@Override
 	public Snapshot<T> load(String name) {
-		File file = new File(name);
-		try (FileInputStream fis = new FileInputStream(file)) {
-			byte[] data = new byte[(int) file.length()];
-			fis.read(data);
-			return decode(data);
+		File file;
+		synchronized (this.snapshots) {
+			file = this.snapshots.get(name);
+		}
+		if (file == null) {
+			file = this.layout.resolve(name);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size >= MAPPED_LOAD_THRESHOLD) {
+				// large snapshots are decoded straight from the page cache
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				try {
+					return decode(mapped);
+				}
+				finally {
+					DirectBuffers.release(mapped);
+				}
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("Unexpected end of snapshot " + file);
+				}
+			}
+			buffer.flip();
+			return decode(buffer);
 		}
 		catch (IOException e) {
 			throw new UncheckedIOException(e);
@@ -65,7 +206,10 @@ public abstract class AbstractFileSnapshotStorage<T> implements SnapshotStorage<
 
 	@Override
 	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
-		String lastPath = this.snapshots.keySet().stream().reduce((first, second) -> second).orElse(null);
+		String lastPath;
+		synchronized (this.snapshots) {
+			lastPath = this.snapshots.keySet().stream().reduce((first, second) -> second).orElse(null);
+		}
 		if (lastPath == null) {
 			return null;
 		}
@@ -74,21 +218,37 @@ public abstract class AbstractFileSnapshotStorage<T> implements SnapshotStorage<
 
 	@Override
 	public boolean hasSnapshot(String name) {
-		return this.snapshots.containsKey(name);
+		synchronized (this.snapshots) {
+			return this.snapshots.containsKey(name);
+		}
 	}
 
 	@Override
 	public void clear() {
-		for (File file : this.snapshots.values()) {
-			file.delete();
+		synchronized (this.snapshots) {
+			for (File file : this.snapshots.values()) {
+				file.delete();
+			}
+			this.snapshots.clear();
+			if (this.manifest != null) {
+				this.manifest.recordClear();
+				compactManifestIfNeeded();
+			}
 		}
-		this.snapshots.clear();
+		syncManifest();
 	}
 
 	@Override
 	public void remove(String name) {
-		this.snapshots.get(name).delete();
-		this.snapshots.remove(name);
+		synchronized (this.snapshots) {
+			this.snapshots.get(name).delete();
+			this.snapshots.remove(name);
+			if (this.manifest != null) {
+				this.manifest.recordRemove(name);
+				compactManifestIfNeeded();
+			}
+		}
+		syncManifest();
 	}
 
 }
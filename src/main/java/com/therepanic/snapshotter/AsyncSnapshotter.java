@@ -0,0 +1,307 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class AsyncSnapshotter<T> implements AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private final ExecutorService executor;
+
+	private final boolean ownsExecutor;
+
+	private final Snapshotter<T> snapshotter;
+
+	private final DefaultSnapshotter<T> detached;
+
+	private final int capacity;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final ArrayDeque<PendingSave<T>> queue = new ArrayDeque<>();
+
+	private final Map<String, PendingSave<T>> pendingByName = new HashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = this.lock.newCondition();
+
+	private final Condition drained = this.lock.newCondition();
+
+	private boolean draining;
+
+	private boolean closed;
+
+	private long droppedCount;
+
+	private AsyncSnapshotter(ExecutorService executor, boolean ownsExecutor, Snapshotter<T> snapshotter, int capacity,
+			OverflowPolicy overflowPolicy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.snapshotter = snapshotter;
+		this.detached = (snapshotter instanceof DefaultSnapshotter) ? (DefaultSnapshotter<T>) snapshotter : null;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public AsyncSnapshotter(ExecutorService executor, Snapshotter<T> snapshotter, int capacity,
+			OverflowPolicy overflowPolicy) {
+		this(executor, false, snapshotter, capacity, overflowPolicy);
+	}
+
+	public AsyncSnapshotter(Snapshotter<T> snapshotter, int capacity, OverflowPolicy overflowPolicy) {
+		this(Executors.newSingleThreadExecutor(), true, snapshotter, capacity, overflowPolicy);
+	}
+
+	public AsyncSnapshotter(Snapshotter<T> snapshotter) {
+		this(snapshotter, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+	}
+
+	public CompletableFuture<Void> save() {
+		return save("default");
+	}
+
+	public CompletableFuture<Void> save(String name) {
+		// only the copy runs on the caller, encoding and I/O happen in the pipeline, other snapshotters
+		// cannot capture detached and are saved whole by the pipeline under their lock
+		Snapshot<T> snapshot = (this.detached != null) ? this.detached.capture() : null;
+		PendingSave<T> dropped = null;
+		CompletableFuture<Void> result;
+		boolean startDrain = false;
+		this.lock.lock();
+		try {
+			if (this.closed) {
+				throw new IllegalStateException("AsyncSnapshotter is closed");
+			}
+			PendingSave<T> pending = this.pendingByName.get(name);
+			if (this.overflowPolicy == OverflowPolicy.COALESCE && pending != null) {
+				pending.snapshot = snapshot;
+				return pending.future;
+			}
+			while (this.queue.size() >= this.capacity) {
+				if (this.overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+					dropped = this.queue.poll();
+					this.pendingByName.remove(dropped.name, dropped);
+					this.droppedCount++;
+				}
+				else {
+					awaitQuietly(this.notFull);
+				}
+			}
+			pending = new PendingSave<>(name, snapshot);
+			this.queue.add(pending);
+			this.pendingByName.put(name, pending);
+			result = pending.future;
+			if (!this.draining) {
+				this.draining = true;
+				startDrain = true;
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+		if (dropped != null) {
+			dropped.future.cancel(false);
+		}
+		if (startDrain) {
+			try {
+				this.executor.execute(this::drain);
+			}
+			catch (RejectedExecutionException e) {
+				failPending(e);
+			}
+		}
+		return result;
+	}
+
+	private void failPending(Throwable cause) {
+		List<PendingSave<T>> failed;
+		this.lock.lock();
+		try {
+			failed = new ArrayList<>(this.queue);
+			this.queue.clear();
+			this.pendingByName.clear();
+			this.draining = false;
+			this.notFull.signalAll();
+			this.drained.signalAll();
+		}
+		finally {
+			this.lock.unlock();
+		}
+		for (PendingSave<T> pending : failed) {
+			pending.future.completeExceptionally(cause);
+		}
+	}
+
+	private void drain() {
+		boolean finished = false;
+		try {
+			drainQueue();
+			finished = true;
+		}
+		finally {
+			if (!finished) {
+				// keeps flush and close from waiting forever on a drain that died
+				failPending(new IllegalStateException("Snapshot pipeline stopped unexpectedly"));
+			}
+		}
+	}
+
+	private void drainQueue() {
+		while (true) {
+			String name;
+			Snapshot<T> snapshot;
+			CompletableFuture<Void> future;
+			this.lock.lock();
+			try {
+				PendingSave<T> pending = this.queue.poll();
+				if (pending == null) {
+					this.draining = false;
+					this.drained.signalAll();
+					return;
+				}
+				this.pendingByName.remove(pending.name, pending);
+				this.notFull.signal();
+				name = pending.name;
+				snapshot = pending.snapshot;
+				future = pending.future;
+			}
+			finally {
+				this.lock.unlock();
+			}
+			try {
+				if (snapshot != null) {
+					this.detached.save(name, snapshot);
+				}
+				else {
+					synchronized (this.snapshotter) {
+						this.snapshotter.save(name);
+					}
+				}
+				future.complete(null);
+			}
+			catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	public void flush() {
+		this.lock.lock();
+		try {
+			while (this.draining) {
+				awaitQuietly(this.drained);
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private static void awaitQuietly(Condition condition) {
+		try {
+			condition.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for pending snapshots", e);
+		}
+	}
+
+	public int getPendingCount() {
+		this.lock.lock();
+		try {
+			return this.queue.size();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	public long getDroppedCount() {
+		this.lock.lock();
+		try {
+			return this.droppedCount;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	public Snapshotter<T> getSnapshotter() {
+		return this.snapshotter;
+	}
+
+	@Override
+	public void close() {
+		this.lock.lock();
+		try {
+			this.closed = true;
+		}
+		finally {
+			this.lock.unlock();
+		}
+		flush();
+		if (this.ownsExecutor) {
+			this.executor.shutdown();
+			try {
+				if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+					this.executor.shutdownNow();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static final class PendingSave<T> {
+
+		private final String name;
+
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private Snapshot<T> snapshot;
+
+		private PendingSave(String name, Snapshot<T> snapshot) {
+			this.name = name;
+			this.snapshot = snapshot;
+		}
+
+	}
+
+}
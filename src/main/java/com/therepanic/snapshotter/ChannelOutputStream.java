@@ -0,0 +1,81 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class ChannelOutputStream extends OutputStream {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal
+		.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer;
+
+	ChannelOutputStream(FileChannel channel) {
+		this.channel = channel;
+		this.buffer = BUFFERS.get();
+		this.buffer.clear();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			flush();
+		}
+		this.buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!this.buffer.hasRemaining()) {
+				flush();
+			}
+			int count = Math.min(length, this.buffer.remaining());
+			this.buffer.put(bytes, offset, count);
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the channel belongs to the caller, closing only drains the buffer
+		flush();
+	}
+
+}
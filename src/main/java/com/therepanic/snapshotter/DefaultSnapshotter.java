@@ -23,7 +23,9 @@ package com.therepanic.snapshotter;
 import com.therepanic.snapshotter.event.SnapshotterRemovedEvent;
 import com.therepanic.snapshotter.event.SnapshotterRestoredEvent;
 import com.therepanic.snapshotter.event.SnapshotterSavedEvent;
+import com.therepanic.snapshotter.strategy.MethodHandleSnapshotStrategy;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -37,12 +39,24 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	private final List<SnapshotterListener<T>> listeners;
 
+	private final RestoreMode restoreMode;
+
+	// detached saves run on other threads, so the storage and the listeners are only touched under this lock,
+	// a storage shared between snapshotters must be thread-safe on its own
+	private final Object storageLock = new Object();
+
 	public DefaultSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
-			List<SnapshotterListener<T>> listeners) {
+			List<SnapshotterListener<T>> listeners, RestoreMode restoreMode) {
 		this.target = target;
 		this.storage = storage;
 		this.strategy = strategy;
 		this.listeners = listeners;
+		this.restoreMode = restoreMode;
+	}
+
+	public DefaultSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
+			List<SnapshotterListener<T>> listeners) {
+		this(target, storage, strategy, listeners, RestoreMode.REPLACE);
 	}
 
 	@Override
@@ -52,8 +66,18 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	@Override
 	public void save(String name) {
-		Snapshot<T> snapshot = new Snapshot<>(this.target, this.strategy);
-		this.storage.save(name, snapshot);
+		save(name, this.storage.capture(this.target, this.strategy));
+	}
+
+	public Snapshot<T> capture() {
+		// a plain copy, the storage encodes it later in save(name, snapshot) without holding the target
+		return new Snapshot<>(this.target, this.strategy);
+	}
+
+	public void save(String name, Snapshot<T> snapshot) {
+		synchronized (this.storageLock) {
+			this.storage.save(name, snapshot);
+		}
 		notify(new SnapshotterSavedEvent<>(name, this.target, snapshot));
 	}
 
@@ -64,29 +88,43 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	@Override
 	public boolean restore(String name) {
-		Snapshot<T> snapshot = this.storage.load(name);
+		Snapshot<T> snapshot;
+		synchronized (this.storageLock) {
+			snapshot = this.storage.load(name);
+		}
 		if (snapshot == null) {
 			return false;
 		}
-		snapshot.restore(this.target);
+		restoreFrom(snapshot);
 		notify(new SnapshotterRestoredEvent<>(name, this.target));
 		return true;
 	}
 
+	private void restoreFrom(Snapshot<T> snapshot) {
+		if (this.restoreMode == RestoreMode.REPLACE && this.strategy.sharesState()) {
+			// replacing would alias subtrees shared by other snapshots into the target, so a private copy is restored
+			snapshot = new Snapshot<>(snapshot.getState(), new MethodHandleSnapshotStrategy<>());
+		}
+		snapshot.restore(this.target, this.restoreMode);
+	}
+
 	@Override
 	public boolean restoreLast() {
-		Map.Entry<String, Snapshot<T>> snapshotEntry = this.storage.loadLastEntry();
+		Map.Entry<String, Snapshot<T>> snapshotEntry;
+		synchronized (this.storageLock) {
+			snapshotEntry = this.storage.loadLastEntry();
+		}
 		if (snapshotEntry.getValue() == null) {
 			return false;
 		}
-		snapshotEntry.getValue().restore(this.target);
+		restoreFrom(snapshotEntry.getValue());
 		notify(new SnapshotterRestoredEvent<>(snapshotEntry.getKey(), this.target));
 		return true;
 	}
 
 	@Override
 	public Map<String, String> diff(String name) {
-		return DiffUtils.diff(this.target, this.storage.load(name).getState());
+		return DiffUtils.diff(this.target, load(name).getState());
 	}
 
 	@Override
@@ -96,17 +134,27 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	@Override
 	public Map<String, String> diff(String name1, String name2) {
-		return DiffUtils.diff(this.storage.load(name2).getState(), this.storage.load(name1).getState());
+		return DiffUtils.diff(load(name2).getState(), load(name1).getState());
+	}
+
+	private Snapshot<T> load(String name) {
+		synchronized (this.storageLock) {
+			return this.storage.load(name);
+		}
 	}
 
 	@Override
 	public boolean hasSnapshot(String name) {
-		return this.storage.hasSnapshot(name);
+		synchronized (this.storageLock) {
+			return this.storage.hasSnapshot(name);
+		}
 	}
 
 	@Override
 	public void clear() {
-		this.storage.clear();
+		synchronized (this.storageLock) {
+			this.storage.clear();
+		}
 	}
 
 	@Override
@@ -116,7 +164,9 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	@Override
 	public void remove(String name) {
-		this.storage.remove(name);
+		synchronized (this.storageLock) {
+			this.storage.remove(name);
+		}
 		notify(new SnapshotterRemovedEvent<>(name, this.target));
 	}
 
@@ -139,16 +189,25 @@ public class DefaultSnapshotter<T> implements Snapshotter<T> {
 
 	@Override
 	public void addListener(SnapshotterListener<T> listener) {
-		this.listeners.add(listener);
+		synchronized (this.storageLock) {
+			this.listeners.add(listener);
+		}
 	}
 
 	@Override
 	public void removeListener(SnapshotterListener<T> listener) {
-		this.listeners.remove(listener);
+		synchronized (this.storageLock) {
+			this.listeners.remove(listener);
+		}
 	}
 
 	private void notify(AbstractSnapshotterEvent<T> event) {
-		for (SnapshotterListener<T> listener : this.listeners) {
+		// listeners run without the lock, so a listener calling back into the snapshotter cannot deadlock
+		List<SnapshotterListener<T>> current;
+		synchronized (this.storageLock) {
+			current = new ArrayList<>(this.listeners);
+		}
+		for (SnapshotterListener<T> listener : current) {
 			listener.onEvent(event);
 		}
 	}
@@ -34,6 +34,10 @@ public class DiffUtils {
 		return compareObjects("", first, second);
 	}
 
+	public static void diff(String prefix, Object first, Object second, Map<String, String> differences) {
+		differences.putAll(compareObjects(prefix, first, second));
+	}
+
 	private static Map<String, String> compareObjects(String prefix, Object first, Object second) {
 		Map<String, String> differences = new HashMap<>();
 		if (first == null || second == null) {
@@ -45,6 +49,11 @@ public class DiffUtils {
 			differences.put(prefix.isEmpty() ? "root" : prefix, second + " -> " + first);
 			return differences;
 		}
+		SnapshotSupport<Object> support = SnapshotSupports.find(first.getClass());
+		if (support != null) {
+			support.diff(prefix, first, second, differences);
+			return differences;
+		}
 		for (Field field : first.getClass().getDeclaredFields()) {
 			field.setAccessible(true);
 			try {
@@ -0,0 +1,80 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+public final class DirectBuffers {
+
+	private static final MethodHandle RELEASE = findRelease();
+
+	private DirectBuffers() {
+	}
+
+	private static MethodHandle findRelease() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			return MethodHandles.lookup()
+				.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+				.bindTo(field.get(null));
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			return findLegacyRelease();
+		}
+	}
+
+	private static MethodHandle findLegacyRelease() {
+		// before JDK 9 every direct buffer carries a sun.misc.Cleaner that releases it
+		try {
+			Method cleaner = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+			cleaner.setAccessible(true);
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			clean.setAccessible(true);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			return MethodHandles.filterReturnValue(lookup.unreflect(cleaner), lookup.unreflect(clean))
+				.asType(MethodType.methodType(void.class, ByteBuffer.class));
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	public static void release(ByteBuffer buffer) {
+		// frees the native memory or mapping now instead of whenever the buffer is collected,
+		// the buffer must not be used after
+		if (RELEASE == null || !buffer.isDirect()) {
+			return;
+		}
+		try {
+			RELEASE.invokeExact(buffer);
+		}
+		catch (Throwable e) {
+			// the memory is left to the garbage collector
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@FunctionalInterface
+public interface DurabilityPolicy {
+
+	static DurabilityPolicy none() {
+		return channel -> {
+		};
+	}
+
+	static DurabilityPolicy syncEachSave() {
+		return new DurabilityPolicy() {
+
+			@Override
+			public void afterWrite(FileChannel channel) throws IOException {
+				channel.force(true);
+			}
+
+			@Override
+			public void afterPublish(Path file) throws IOException {
+				// the rename itself only survives a crash once the directory entry is synced
+				FileSync.forceParent(file);
+			}
+
+		};
+	}
+
+	static PeriodicDurabilityPolicy periodic(Duration interval) {
+		return new PeriodicDurabilityPolicy(interval);
+	}
+
+	static DurabilityPolicy groupCommit(Duration maxWait) {
+		return new GroupCommitDurabilityPolicy(maxWait);
+	}
+
+	void afterWrite(FileChannel channel) throws IOException;
+
+	default void afterPublish(Path file) throws IOException {
+	}
+
+}
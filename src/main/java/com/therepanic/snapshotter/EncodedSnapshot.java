@@ -0,0 +1,74 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.lang.ref.SoftReference;
+import java.util.function.Function;
+
+public class EncodedSnapshot<T> extends Snapshot<T> {
+
+	private final byte[] data;
+
+	private final Function<byte[], T> decoder;
+
+	private final boolean cacheState;
+
+	private volatile SoftReference<T> cachedState;
+
+	public EncodedSnapshot(byte[] data, Function<byte[], T> decoder, boolean cacheState) {
+		this.data = data;
+		this.decoder = decoder;
+		this.cacheState = cacheState;
+	}
+
+	public EncodedSnapshot(byte[] data, Function<byte[], T> decoder) {
+		this(data, decoder, false);
+	}
+
+	@Override
+	public T getState() {
+		if (!this.cacheState) {
+			return this.decoder.apply(this.data);
+		}
+		SoftReference<T> reference = this.cachedState;
+		T state = reference != null ? reference.get() : null;
+		if (state == null) {
+			state = this.decoder.apply(this.data);
+			this.cachedState = new SoftReference<>(state);
+		}
+		return state;
+	}
+
+	@Override
+	public void restore(T target, RestoreMode mode) {
+		// a cached state must never leak into the target, so restores always decode a fresh copy
+		new Snapshot<>(this.decoder.apply(this.data)).restore(target, mode);
+	}
+
+	public byte[] getData() {
+		return this.data;
+	}
+
+	public Function<byte[], T> getDecoder() {
+		return this.decoder;
+	}
+
+}
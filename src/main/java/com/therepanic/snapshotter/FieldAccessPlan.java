@@ -0,0 +1,298 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public final class FieldAccessPlan {
+
+	private static final ClassValue<FieldAccessPlan> PLANS = new ClassValue<FieldAccessPlan>() {
+		@Override
+		protected FieldAccessPlan computeValue(Class<?> type) {
+			return new FieldAccessPlan(type);
+		}
+	};
+
+	private static final MethodHandle NO_OP = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null)
+		.asType(MethodType.methodType(void.class)), 0, Object.class, Object.class);
+
+	private final Class<?> type;
+
+	private final MethodHandle constructor;
+
+	private final FieldAccessor[] fields;
+
+	private final FieldAccessor[] referenceFields;
+
+	private final MethodHandle primitiveCopier;
+
+	private final FieldAccessor[] primitiveFields;
+
+	private final boolean coversAllFields;
+
+	private FieldAccessPlan(Class<?> type) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		List<FieldAccessor> fields = new ArrayList<>();
+		List<FieldAccessor> referenceFields = new ArrayList<>();
+		List<FieldAccessor> primitiveFields = new ArrayList<>();
+		MethodHandle primitiveCopier = NO_OP;
+		Class<?> current = type;
+		// JDK classes cannot be opened reflectively on Java 9+, so the walk stops at the first one
+		for (; current != null && current != Object.class && !isJdkType(current); current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				FieldAccessor accessor = new FieldAccessor(lookup, field);
+				fields.add(accessor);
+				if (accessor.isPrimitive()) {
+					primitiveCopier = MethodHandles.foldArguments(primitiveCopier, accessor.copier);
+					primitiveFields.add(accessor);
+				}
+				else {
+					referenceFields.add(accessor);
+				}
+			}
+		}
+		this.type = type;
+		this.constructor = findConstructor(lookup, type);
+		this.fields = fields.toArray(new FieldAccessor[0]);
+		this.referenceFields = referenceFields.toArray(new FieldAccessor[0]);
+		this.primitiveCopier = primitiveCopier;
+		this.primitiveFields = primitiveFields.toArray(new FieldAccessor[0]);
+		this.coversAllFields = current == null || current == Object.class;
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		return type.getName().startsWith("java.");
+	}
+
+	public static FieldAccessPlan of(Class<?> type) {
+		return PLANS.get(type);
+	}
+
+	private static MethodHandle findConstructor(MethodHandles.Lookup lookup, Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray()) {
+			return null;
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+		}
+		catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	public Class<?> getType() {
+		return this.type;
+	}
+
+	public FieldAccessor[] getFields() {
+		return this.fields;
+	}
+
+	public FieldAccessor[] getReferenceFields() {
+		return this.referenceFields;
+	}
+
+	public boolean coversAllFields() {
+		return this.coversAllFields;
+	}
+
+	public boolean canInstantiate() {
+		return this.constructor != null;
+	}
+
+	public Object newInstance() {
+		if (this.constructor == null) {
+			throw new IllegalStateException("Class " + this.type.getName() + " has no accessible no-arg constructor");
+		}
+		try {
+			return (Object) this.constructor.invokeExact();
+		}
+		catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	public void copyPrimitives(Object source, Object target) {
+		try {
+			this.primitiveCopier.invokeExact(target, source);
+		}
+		catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	public boolean primitivesEqual(Object first, Object second) {
+		for (FieldAccessor field : this.primitiveFields) {
+			if (!field.valueEquals(first, second)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void copyFields(Object source, Object target) {
+		copyPrimitives(source, target);
+		for (FieldAccessor field : this.referenceFields) {
+			field.set(target, field.get(source));
+		}
+	}
+
+	private static boolean same(boolean first, boolean second) {
+		return first == second;
+	}
+
+	private static boolean same(byte first, byte second) {
+		return first == second;
+	}
+
+	private static boolean same(char first, char second) {
+		return first == second;
+	}
+
+	private static boolean same(short first, short second) {
+		return first == second;
+	}
+
+	private static boolean same(int first, int second) {
+		return first == second;
+	}
+
+	private static boolean same(long first, long second) {
+		return first == second;
+	}
+
+	// bitwise like Float.equals, so NaN matches itself and -0.0 differs from 0.0
+	private static boolean same(float first, float second) {
+		return Float.floatToIntBits(first) == Float.floatToIntBits(second);
+	}
+
+	private static boolean same(double first, double second) {
+		return Double.doubleToLongBits(first) == Double.doubleToLongBits(second);
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+	}
+
+	public static final class FieldAccessor {
+
+		private final Field field;
+
+		private final MethodHandle getter;
+
+		private final MethodHandle setter;
+
+		private final MethodHandle copier;
+
+		private final MethodHandle comparer;
+
+		private FieldAccessor(MethodHandles.Lookup lookup, Field field) {
+			this.field = field;
+			try {
+				field.setAccessible(true);
+				MethodHandle getter = lookup.unreflectGetter(field);
+				MethodHandle setter = lookup.unreflectSetter(field);
+				this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+				this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+				// (target, source) -> target.field = source.field, without boxing primitive values
+				this.copier = MethodHandles.collectArguments(setter, 1, getter)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+				// (first, second) -> first.field == second.field on the unboxed values
+				this.comparer = field.getType().isPrimitive() ? MethodHandles
+					.filterArguments(lookup.findStatic(FieldAccessPlan.class, "same",
+							MethodType.methodType(boolean.class, field.getType(), field.getType())), 0, getter, getter)
+					.asType(MethodType.methodType(boolean.class, Object.class, Object.class)) : null;
+			}
+			catch (ReflectiveOperationException | RuntimeException e) {
+				throw new IllegalStateException("Cannot access field " + field, e);
+			}
+		}
+
+		public String getName() {
+			return this.field.getName();
+		}
+
+		public Class<?> getType() {
+			return this.field.getType();
+		}
+
+		public boolean isPrimitive() {
+			return this.field.getType().isPrimitive();
+		}
+
+		public Object get(Object source) {
+			try {
+				return (Object) this.getter.invokeExact(source);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		public void set(Object target, Object value) {
+			try {
+				this.setter.invokeExact(target, value);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		public boolean valueEquals(Object first, Object second) {
+			if (this.comparer == null) {
+				return Objects.equals(get(first), get(second));
+			}
+			try {
+				return (boolean) this.comparer.invokeExact(first, second);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		public void copy(Object source, Object target) {
+			try {
+				this.copier.invokeExact(target, source);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+	}
+
+}
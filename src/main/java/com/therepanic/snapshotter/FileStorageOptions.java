@@ -0,0 +1,68 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+public class FileStorageOptions {
+
+	private SnapshotManifest manifest;
+
+	private DurabilityPolicy durabilityPolicy = DurabilityPolicy.none();
+
+	private SnapshotLayout layout = SnapshotLayout.workingDirectory();
+
+	public static FileStorageOptions defaults() {
+		return new FileStorageOptions();
+	}
+
+	public FileStorageOptions manifest(SnapshotManifest manifest) {
+		this.manifest = manifest;
+		return this;
+	}
+
+	public FileStorageOptions durabilityPolicy(DurabilityPolicy durabilityPolicy) {
+		if (durabilityPolicy == null) {
+			throw new IllegalArgumentException("Durability policy must not be null");
+		}
+		this.durabilityPolicy = durabilityPolicy;
+		return this;
+	}
+
+	public FileStorageOptions layout(SnapshotLayout layout) {
+		if (layout == null) {
+			throw new IllegalArgumentException("Layout must not be null");
+		}
+		this.layout = layout;
+		return this;
+	}
+
+	public SnapshotManifest getManifest() {
+		return this.manifest;
+	}
+
+	public DurabilityPolicy getDurabilityPolicy() {
+		return this.durabilityPolicy;
+	}
+
+	public SnapshotLayout getLayout() {
+		return this.layout;
+	}
+
+}
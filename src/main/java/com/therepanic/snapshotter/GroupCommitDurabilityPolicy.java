@@ -0,0 +1,203 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class GroupCommitDurabilityPolicy implements DurabilityPolicy {
+
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	private final long maxWaitNanos;
+
+	private final int maxBatchSize;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition batchFull = this.lock.newCondition();
+
+	private final Condition committed = this.lock.newCondition();
+
+	private final LongAdder batchCount = new LongAdder();
+
+	private final LongAdder syncCount = new LongAdder();
+
+	private final LongAdder writeCount = new LongAdder();
+
+	private Batch current = new Batch();
+
+	private boolean leading;
+
+	public GroupCommitDurabilityPolicy(Duration maxWait, int maxBatchSize) {
+		if (maxWait.isNegative()) {
+			throw new IllegalArgumentException("Max wait must not be negative");
+		}
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Max batch size must be positive");
+		}
+		this.maxWaitNanos = maxWait.toNanos();
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public GroupCommitDurabilityPolicy(Duration maxWait) {
+		this(maxWait, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	@Override
+	public void afterWrite(FileChannel channel) throws IOException {
+		await(channel);
+	}
+
+	@Override
+	public void afterPublish(Path file) throws IOException {
+		// saves into the same directory share one directory sync
+		Path directory = file.toAbsolutePath().getParent();
+		if (directory != null) {
+			await(directory);
+		}
+	}
+
+	private void await(Object syncable) throws IOException {
+		Batch batch;
+		this.lock.lock();
+		try {
+			batch = this.current;
+			batch.writes.add(syncable);
+			if (batch.writes.size() >= this.maxBatchSize) {
+				this.batchFull.signal();
+			}
+			while (!batch.done && this.leading) {
+				this.committed.awaitUninterruptibly();
+			}
+			if (batch.done) {
+				batch.rethrow(syncable);
+				return;
+			}
+			// no sync is in flight, so this thread leads the batch and gathers followers for the window
+			this.leading = true;
+			awaitBatch(batch);
+			this.current = new Batch();
+		}
+		finally {
+			this.lock.unlock();
+		}
+		// an interrupted leader would close the channels of other writers through ClosedByInterruptException
+		boolean interrupted = Thread.interrupted();
+		try {
+			commit(batch);
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		batch.rethrow(syncable);
+	}
+
+	private void awaitBatch(Batch batch) {
+		long remaining = this.maxWaitNanos;
+		try {
+			while (remaining > 0 && batch.writes.size() < this.maxBatchSize) {
+				remaining = this.batchFull.awaitNanos(remaining);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void commit(Batch batch) {
+		// channels shared by several writers, such as log segments, and directories are forced only once per batch
+		Map<Object, Boolean> distinct = new HashMap<>();
+		for (Object syncable : batch.writes) {
+			if (distinct.put(syncable, Boolean.TRUE) == null) {
+				try {
+					if (syncable instanceof FileChannel) {
+						((FileChannel) syncable).force(true);
+					}
+					else {
+						FileSync.forceDirectory((Path) syncable);
+					}
+				}
+				catch (IOException e) {
+					batch.failures.put(syncable, e);
+				}
+			}
+		}
+		this.batchCount.increment();
+		this.syncCount.add(distinct.size());
+		this.writeCount.add(batch.writes.size());
+		this.lock.lock();
+		try {
+			batch.done = true;
+			this.leading = false;
+			this.committed.signalAll();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	public long getMaxWait(TimeUnit unit) {
+		return unit.convert(this.maxWaitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public long getBatchCount() {
+		return this.batchCount.sum();
+	}
+
+	public long getSyncCount() {
+		return this.syncCount.sum();
+	}
+
+	public long getWriteCount() {
+		return this.writeCount.sum();
+	}
+
+	private static final class Batch {
+
+		private final List<Object> writes = new ArrayList<>();
+
+		private final Map<Object, IOException> failures = new HashMap<>();
+
+		private boolean done;
+
+		private void rethrow(Object syncable) throws IOException {
+			IOException failure = this.failures.get(syncable);
+			if (failure != null) {
+				// the original type is kept so callers can still tell a closed channel from a failed sync
+				throw failure;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+public final class ImmutableTypes {
+
+	private static final Set<Class<?>> KNOWN_TYPES = new HashSet<>(Arrays.asList(String.class, Integer.class,
+			Long.class, Double.class, Float.class, Boolean.class, Character.class, Byte.class, Short.class,
+			Class.class, BigInteger.class, BigDecimal.class, UUID.class, Locale.class, URI.class, File.class,
+			Pattern.class));
+
+	private static final ThreadLocal<Set<Class<?>>> ANALYZING = ThreadLocal.withInitial(HashSet::new);
+
+	private static final ClassValue<Boolean> IMMUTABLE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			Set<Class<?>> analyzing = ANALYZING.get();
+			analyzing.add(type);
+			try {
+				return analyze(type);
+			}
+			finally {
+				analyzing.remove(type);
+			}
+		}
+	};
+
+	private ImmutableTypes() {
+	}
+
+	public static boolean isImmutable(Class<?> type) {
+		if (type.isPrimitive()) {
+			return true;
+		}
+		// a type reached again through its own fields is treated as mutable, a
+		// conservative answer keeps the ClassValue cache correct
+		if (ANALYZING.get().contains(type)) {
+			return false;
+		}
+		return IMMUTABLE.get(type);
+	}
+
+	private static boolean analyze(Class<?> type) {
+		if (type.isAnnotationPresent(Immutable.class) || KNOWN_TYPES.contains(type)
+				|| Enum.class.isAssignableFrom(type)) {
+			return true;
+		}
+		if (type.isArray() || type.isInterface()) {
+			return false;
+		}
+		String name = type.getName();
+		if (name.startsWith("java.time.")) {
+			// the package also has builders and exceptions, so only final classes holding nothing but final
+			// fields count, the abstract ZoneId stands for its final subclasses
+			return type == ZoneId.class || (Modifier.isFinal(type.getModifiers()) && hasOnlyFinalFields(type));
+		}
+		if (Modifier.isAbstract(type.getModifiers())) {
+			return false;
+		}
+		if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")) {
+			return false;
+		}
+		for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers)) {
+					continue;
+				}
+				if (!Modifier.isFinal(modifiers) || !isImmutableFieldType(field.getType())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasOnlyFinalFields(Class<?> type) {
+		for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isImmutableFieldType(Class<?> type) {
+		// the declared type must pin down the runtime class, otherwise a mutable
+		// subclass could be stored in the field
+		boolean exact = type.isPrimitive() || Modifier.isFinal(type.getModifiers())
+				|| Enum.class.isAssignableFrom(type) || type.isAnnotationPresent(Immutable.class)
+				|| type.getName().startsWith("java.time.");
+		return exact && isImmutable(type);
+	}
+
+}
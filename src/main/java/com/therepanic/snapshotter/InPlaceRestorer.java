@@ -0,0 +1,203 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import com.therepanic.snapshotter.strategy.MethodHandleSnapshotStrategy;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+final class InPlaceRestorer {
+
+	private final Map<Object, Object> restored = new IdentityHashMap<>();
+
+	private InPlaceRestorer() {
+	}
+
+	static void restore(Object source, Object target) {
+		if (source.getClass() != target.getClass()) {
+			throw new IllegalArgumentException("Cannot restore " + source.getClass().getName() + " into "
+					+ target.getClass().getName() + " in place");
+		}
+		InPlaceRestorer restorer = new InPlaceRestorer();
+		if (restorer.merge(source, target) != target) {
+			throw new IllegalArgumentException(replacementReason(source, target));
+		}
+	}
+
+	private static String replacementReason(Object source, Object target) {
+		Class<?> type = target.getClass();
+		if (type.isArray()) {
+			return "Cannot restore arrays of different length in place";
+		}
+		if (target instanceof Collection || target instanceof Map) {
+			return "Cannot restore " + type.getName() + " in place, it does not support modification";
+		}
+		if (!FieldAccessPlan.of(type).coversAllFields()) {
+			return "Cannot restore " + type.getName() + " in place, its state is partly held by a JDK superclass";
+		}
+		return "Cannot restore " + source.getClass().getName() + " in place";
+	}
+
+	private static boolean isUnmodifiable(Object container, int sourceSize) {
+		// JDK views and immutable collections reject mutation, so they are replaced rather than merged,
+		// Arrays.asList only accepts element updates and so only merges at the same size
+		String name = container.getClass().getName();
+		if (name.equals("java.util.Arrays$ArrayList")) {
+			return ((Collection<?>) container).size() != sourceSize;
+		}
+		return name.startsWith("java.util.Collections$Unmodifiable") || name.startsWith("java.util.Collections$Empty")
+				|| name.startsWith("java.util.Collections$Singleton")
+				|| name.startsWith("java.util.ImmutableCollections$");
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object merge(Object source, Object existing) {
+		if (source == null) {
+			return null;
+		}
+		Class<?> type = source.getClass();
+		if (ImmutableTypes.isImmutable(type)) {
+			return source;
+		}
+		Object done = this.restored.get(source);
+		if (done != null) {
+			return done;
+		}
+		if (existing == null || existing == source || existing.getClass() != type) {
+			return MethodHandleSnapshotStrategy.copy(source, this.restored);
+		}
+		if (type.isArray()) {
+			return mergeArray(source, existing);
+		}
+		if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+			return mergeContainer(source, existing);
+		}
+		FieldAccessPlan plan = FieldAccessPlan.of(type);
+		if (!plan.coversAllFields()) {
+			// inherited JDK state cannot be merged field by field, so the value is replaced
+			return MethodHandleSnapshotStrategy.copy(source, this.restored);
+		}
+		this.restored.put(source, existing);
+		plan.copyPrimitives(source, existing);
+		for (FieldAccessPlan.FieldAccessor field : plan.getReferenceFields()) {
+			Object current = field.get(existing);
+			Object merged = merge(field.get(source), current);
+			if (merged != current) {
+				field.set(existing, merged);
+			}
+		}
+		return existing;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object mergeContainer(Object source, Object existing) {
+		int size = (source instanceof Map) ? ((Map<?, ?>) source).size() : ((Collection<?>) source).size();
+		if (isUnmodifiable(existing, size)) {
+			return MethodHandleSnapshotStrategy.copy(source, this.restored);
+		}
+		try {
+			if (source instanceof List && existing instanceof RandomAccess) {
+				return mergeList((List<?>) source, (List<Object>) existing);
+			}
+			if (source instanceof Collection) {
+				return mergeCollection((Collection<?>) source, (Collection<Object>) existing);
+			}
+			return mergeMap((Map<?, ?>) source, (Map<Object, Object>) existing);
+		}
+		catch (UnsupportedOperationException e) {
+			// other read-only containers reject their first change, they are replaced by a copy
+			// that reuses whatever elements were already merged
+			this.restored.remove(source);
+			return MethodHandleSnapshotStrategy.copy(source, this.restored);
+		}
+	}
+
+	private Object mergeArray(Object source, Object existing) {
+		int length = Array.getLength(source);
+		if (Array.getLength(existing) != length) {
+			return MethodHandleSnapshotStrategy.copy(source, this.restored);
+		}
+		this.restored.put(source, existing);
+		if (source.getClass().getComponentType().isPrimitive()) {
+			System.arraycopy(source, 0, existing, 0, length);
+			return existing;
+		}
+		Object[] sourceArray = (Object[]) source;
+		Object[] existingArray = (Object[]) existing;
+		for (int i = 0; i < length; i++) {
+			existingArray[i] = merge(sourceArray[i], existingArray[i]);
+		}
+		return existing;
+	}
+
+	private Object mergeList(List<?> source, List<Object> existing) {
+		this.restored.put(source, existing);
+		int common = Math.min(source.size(), existing.size());
+		for (int i = 0; i < common; i++) {
+			Object current = existing.get(i);
+			Object merged = merge(source.get(i), current);
+			if (merged != current) {
+				existing.set(i, merged);
+			}
+		}
+		while (existing.size() > source.size()) {
+			existing.remove(existing.size() - 1);
+		}
+		for (int i = common; i < source.size(); i++) {
+			existing.add(merge(source.get(i), null));
+		}
+		return existing;
+	}
+
+	private Object mergeCollection(Collection<?> source, Collection<Object> existing) {
+		this.restored.put(source, existing);
+		existing.clear();
+		for (Object element : source) {
+			existing.add(merge(element, null));
+		}
+		return existing;
+	}
+
+	private Object mergeMap(Map<?, ?> source, Map<Object, Object> existing) {
+		this.restored.put(source, existing);
+		existing.keySet().retainAll(source.keySet());
+		for (Map.Entry<?, ?> entry : source.entrySet()) {
+			Object key = entry.getKey();
+			if (!existing.containsKey(key)) {
+				// new keys are copied like values, so the live map never shares a key with the snapshot
+				existing.put(merge(key, null), merge(entry.getValue(), null));
+				continue;
+			}
+			Object current = existing.get(key);
+			Object merged = merge(entry.getValue(), current);
+			if (merged != current) {
+				existing.put(key, merged);
+			}
+		}
+		return existing;
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class OptimisticSnapshotter<T> extends DefaultSnapshotter<T> {
+
+	public static final int DEFAULT_MAX_RETRIES = 8;
+
+	public static final Duration DEFAULT_FALLBACK_TIMEOUT = Duration.ofSeconds(1);
+
+	private final T target;
+
+	private final LongSupplier version;
+
+	private final int maxRetries;
+
+	private final long fallbackTimeoutNanos;
+
+	private final LongAdder retries = new LongAdder();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	public OptimisticSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
+			List<SnapshotterListener<T>> listeners, RestoreMode restoreMode, LongSupplier version, int maxRetries,
+			Duration fallbackTimeout) {
+		super(target, storage, strategy, listeners, restoreMode);
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("Max retries must not be negative: " + maxRetries);
+		}
+		if (fallbackTimeout.isNegative()) {
+			throw new IllegalArgumentException("Fallback timeout must not be negative: " + fallbackTimeout);
+		}
+		this.target = target;
+		this.version = version;
+		this.maxRetries = maxRetries;
+		this.fallbackTimeoutNanos = fallbackTimeout.toNanos();
+	}
+
+	public OptimisticSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
+			List<SnapshotterListener<T>> listeners, RestoreMode restoreMode, LongSupplier version, int maxRetries) {
+		this(target, storage, strategy, listeners, restoreMode, version, maxRetries, DEFAULT_FALLBACK_TIMEOUT);
+	}
+
+	public OptimisticSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
+			List<SnapshotterListener<T>> listeners, LongSupplier version) {
+		this(target, storage, strategy, listeners, RestoreMode.REPLACE, version, DEFAULT_MAX_RETRIES);
+	}
+
+	public OptimisticSnapshotter(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy,
+			List<SnapshotterListener<T>> listeners) {
+		this(target, storage, strategy, listeners, versionOf(target));
+	}
+
+	private static LongSupplier versionOf(Object target) {
+		if (!(target instanceof Versioned)) {
+			throw new IllegalArgumentException(
+					"Target " + target.getClass().getName() + " does not implement " + Versioned.class.getName());
+		}
+		return ((Versioned) target)::getVersion;
+	}
+
+	@Override
+	public void save(String name) {
+		// the storage may encode the live target directly, which would bypass the
+		// version check, so always save a verified copy
+		save(name, capture());
+	}
+
+	@Override
+	public Snapshot<T> capture() {
+		for (int attempt = 0; attempt <= this.maxRetries; attempt++) {
+			Snapshot<T> snapshot = tryCapture();
+			if (snapshot != null) {
+				return snapshot;
+			}
+			this.retries.increment();
+			Thread.yield();
+		}
+		this.fallbacks.increment();
+		// writers that synchronize on the target are held off here, others are waited out until the
+		// deadline so a writer that died mid-update cannot livelock the capture
+		long deadline = System.nanoTime() + this.fallbackTimeoutNanos;
+		synchronized (this.target) {
+			do {
+				Snapshot<T> snapshot = tryCapture();
+				if (snapshot != null) {
+					return snapshot;
+				}
+				Thread.yield();
+			}
+			while (System.nanoTime() - deadline < 0);
+		}
+		throw new IllegalStateException("Target did not reach a stable version within "
+				+ Duration.ofNanos(this.fallbackTimeoutNanos) + ", last version " + this.version.getAsLong());
+	}
+
+	private Snapshot<T> tryCapture() {
+		long before = this.version.getAsLong();
+		if ((before & 1) != 0) {
+			// an odd version marks a write in progress
+			return null;
+		}
+		Snapshot<T> snapshot;
+		try {
+			snapshot = super.capture();
+		}
+		catch (RuntimeException e) {
+			// a torn read may trip the copier, retry unless the target was stable
+			Fences.loadFence();
+			if (this.version.getAsLong() == before) {
+				throw e;
+			}
+			return null;
+		}
+		// the copy's reads must complete before the version is read again
+		Fences.loadFence();
+		return (this.version.getAsLong() == before) ? snapshot : null;
+	}
+
+	public long getRetryCount() {
+		return this.retries.sum();
+	}
+
+	public long getFallbackCount() {
+		return this.fallbacks.sum();
+	}
+
+}
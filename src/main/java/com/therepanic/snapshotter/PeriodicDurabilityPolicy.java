@@ -0,0 +1,174 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class PeriodicDurabilityPolicy implements DurabilityPolicy, AutoCloseable {
+
+	private final long intervalNanos;
+
+	private final ScheduledExecutorService flusher;
+
+	private final Object flushLock = new Object();
+
+	private final Set<FileChannel> dirtyChannels = new LinkedHashSet<>();
+
+	private final Set<Path> dirtyFiles = new LinkedHashSet<>();
+
+	private IOException failure;
+
+	public PeriodicDurabilityPolicy(Duration interval) {
+		if (interval.isNegative()) {
+			throw new IllegalArgumentException("Interval must not be negative");
+		}
+		this.intervalNanos = interval.toNanos();
+		if (this.intervalNanos == 0) {
+			this.flusher = null;
+			return;
+		}
+		// the flusher bounds the loss to one interval even when no further save arrives to trigger a sync
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "periodic-durability-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flusher.scheduleWithFixedDelay(this::flushInBackground, this.intervalNanos, this.intervalNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void afterWrite(FileChannel channel) throws IOException {
+		synchronized (this) {
+			rethrowFailure();
+			// a closed channel cannot be forced anymore, its file is synced by path once it is published
+			this.dirtyChannels.removeIf(dirty -> !dirty.isOpen());
+			this.dirtyChannels.add(channel);
+		}
+		if (this.flusher == null) {
+			flush();
+		}
+	}
+
+	@Override
+	public void afterPublish(Path file) throws IOException {
+		synchronized (this) {
+			rethrowFailure();
+			this.dirtyFiles.add(file.toAbsolutePath());
+		}
+		if (this.flusher == null) {
+			flush();
+		}
+	}
+
+	public long getInterval(TimeUnit unit) {
+		return unit.convert(this.intervalNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void flush() throws IOException {
+		synchronized (this.flushLock) {
+			List<FileChannel> channels;
+			List<Path> files;
+			synchronized (this) {
+				channels = new ArrayList<>(this.dirtyChannels);
+				files = new ArrayList<>(this.dirtyFiles);
+				this.dirtyChannels.clear();
+				this.dirtyFiles.clear();
+			}
+			for (FileChannel channel : channels) {
+				if (channel.isOpen()) {
+					try {
+						channel.force(true);
+					}
+					catch (ClosedChannelException e) {
+						// closed after its file was published, which is synced by path below
+					}
+				}
+			}
+			Set<Path> directories = new LinkedHashSet<>();
+			for (Path file : files) {
+				FileSync.force(file);
+				if (file.getParent() != null) {
+					directories.add(file.getParent());
+				}
+			}
+			for (Path directory : directories) {
+				FileSync.forceDirectory(directory);
+			}
+		}
+	}
+
+	private void flushInBackground() {
+		try {
+			flush();
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				// nobody waits on the flusher, so the next save reports the failed sync
+				if (this.failure == null) {
+					this.failure = e;
+				}
+			}
+		}
+	}
+
+	private void rethrowFailure() throws IOException {
+		IOException failure = this.failure;
+		if (failure != null) {
+			this.failure = null;
+			throw failure;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.flusher != null) {
+			this.flusher.shutdown();
+			try {
+				if (!this.flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+					this.flusher.shutdownNow();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			flush();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
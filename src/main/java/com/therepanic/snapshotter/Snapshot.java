@@ -20,7 +20,8 @@
 
 package com.therepanic.snapshotter;
 
-import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
 
 public class Snapshot<T> {
 
@@ -39,15 +40,34 @@ public class Snapshot<T> {
 	}
 
 	public void restore(T target) {
-		try {
-			for (Field field : this.state.getClass().getDeclaredFields()) {
-				field.setAccessible(true);
-				field.set(target, field.get(this.state));
-			}
+		restore(target, RestoreMode.REPLACE);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void restore(T target, RestoreMode mode) {
+		T state = getState();
+		if (mode == RestoreMode.IN_PLACE) {
+			InPlaceRestorer.restore(state, target);
+			return;
+		}
+		SnapshotSupport<T> support = SnapshotSupports.find(state.getClass());
+		if (support != null) {
+			support.restore(state, target);
+			return;
+		}
+		if (state instanceof Collection && target instanceof Collection) {
+			// JDK containers are refilled through their public API instead of their private fields
+			((Collection<Object>) target).clear();
+			((Collection<Object>) target).addAll((Collection<?>) state);
+			return;
 		}
-		catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
+		if (state instanceof Map && target instanceof Map) {
+			((Map<Object, Object>) target).clear();
+			((Map<Object, Object>) target).putAll((Map<?, ?>) state);
+			return;
 		}
+		// only fields declared outside the JDK are copied, as JDK internals are closed on Java 9+
+		FieldAccessPlan.of(state.getClass()).copyFields(state, target);
 	}
 
 	public T getState() {
@@ -0,0 +1,364 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class SnapshotManifest implements Closeable {
+
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 1024;
+
+	private static final byte SAVE = 1;
+
+	private static final byte REMOVE = 2;
+
+	private static final byte CLEAR = 3;
+
+	private static final int HEADER_LENGTH = 12;
+
+	private static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
+	private final File file;
+
+	private final int compactionThreshold;
+
+	private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+
+	private final DataOutputStream record = new DataOutputStream(this.recordBuffer);
+
+	private DataOutputStream output;
+
+	private FileChannel channel;
+
+	private boolean published;
+
+	private DurabilityPolicy durabilityPolicy = DurabilityPolicy.none();
+
+	private long sequence;
+
+	private long recordCount;
+
+	public SnapshotManifest(File file, int compactionThreshold) {
+		this.file = file;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	public SnapshotManifest(File file) {
+		this(file, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	public synchronized LinkedHashMap<String, File> replay() {
+		LinkedHashMap<String, File> snapshots = new LinkedHashMap<>();
+		long validLength = 0;
+		if (this.file.isFile()) {
+			try (DataInputStream input = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(this.file), 64 * 1024))) {
+				byte[] payload = new byte[256];
+				CRC32 crc = new CRC32();
+				while (true) {
+					int length;
+					long checksum;
+					try {
+						length = input.readInt();
+						checksum = input.readLong();
+						if (length < 0 || length > MAX_RECORD_LENGTH) {
+							break;
+						}
+						if (payload.length < length) {
+							payload = new byte[length];
+						}
+						input.readFully(payload, 0, length);
+					}
+					catch (EOFException e) {
+						break;
+					}
+					crc.reset();
+					crc.update(payload, 0, length);
+					if (crc.getValue() != checksum) {
+						break;
+					}
+					apply(snapshots, new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+					validLength += HEADER_LENGTH + length;
+					this.recordCount++;
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			// only the last append can be torn by a crash, an intact record behind a bad one means the
+			// manifest was damaged in the middle and cutting it off would silently drop snapshots
+			long intact = findIntactRecord(validLength);
+			if (intact >= 0) {
+				throw new IllegalStateException("Manifest " + this.file + " is corrupt at offset " + validLength
+						+ " but holds intact records from offset " + intact);
+			}
+			// a record torn by a crash is cut off so appends continue from a clean tail
+			truncate(validLength);
+		}
+		openOutput();
+		return snapshots;
+	}
+
+	private void apply(LinkedHashMap<String, File> snapshots, DataInputStream input) throws IOException {
+		byte operation = input.readByte();
+		this.sequence = Math.max(this.sequence, input.readLong());
+		input.readLong();
+		if (operation == SAVE) {
+			String name = input.readUTF();
+			snapshots.put(name, new File(input.readUTF()));
+		}
+		else if (operation == REMOVE) {
+			snapshots.remove(input.readUTF());
+		}
+		else if (operation == CLEAR) {
+			snapshots.clear();
+		}
+		else {
+			throw new IOException("Unknown manifest operation " + operation);
+		}
+	}
+
+	private long findIntactRecord(long from) {
+		long length = this.file.length();
+		if (length - from <= HEADER_LENGTH) {
+			return -1;
+		}
+		byte[] tail = new byte[(int) Math.min(length - from, Integer.MAX_VALUE)];
+		try (RandomAccessFile raf = new RandomAccessFile(this.file, "r")) {
+			raf.seek(from);
+			raf.readFully(tail);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(tail);
+		CRC32 crc = new CRC32();
+		// the bad record itself is skipped, its header may still look valid
+		for (int offset = 1; offset <= tail.length - HEADER_LENGTH; offset++) {
+			int recordLength = buffer.getInt(offset);
+			if (recordLength <= 0 || recordLength > tail.length - offset - HEADER_LENGTH) {
+				continue;
+			}
+			crc.reset();
+			crc.update(tail, offset + HEADER_LENGTH, recordLength);
+			if (crc.getValue() == buffer.getLong(offset + 4)) {
+				return from + offset;
+			}
+		}
+		return -1;
+	}
+
+	private void truncate(long length) {
+		if (this.file.length() == length) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			raf.setLength(length);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public synchronized void recordSave(String name, File snapshotFile) {
+		append(SAVE, name, snapshotFile.getPath());
+	}
+
+	public synchronized void recordRemove(String name) {
+		append(REMOVE, name, null);
+	}
+
+	public synchronized void recordClear() {
+		append(CLEAR, null, null);
+	}
+
+	synchronized void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+		this.durabilityPolicy = durabilityPolicy;
+	}
+
+	public void sync() {
+		FileChannel channel;
+		DurabilityPolicy durabilityPolicy;
+		boolean published;
+		synchronized (this) {
+			channel = this.channel;
+			durabilityPolicy = this.durabilityPolicy;
+			published = this.published;
+		}
+		if (channel == null) {
+			return;
+		}
+		// called without the lock, a group commit may wait here for other writers to join its batch
+		try {
+			durabilityPolicy.afterWrite(channel);
+			if (!published) {
+				durabilityPolicy.afterPublish(this.file.toPath());
+				synchronized (this) {
+					this.published = true;
+				}
+			}
+		}
+		catch (ClosedChannelException e) {
+			synchronized (this) {
+				if (this.channel == channel) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			// a compaction replaced the file after forcing it, and the rewrite holds this record
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void append(byte operation, String name, String path) {
+		if (this.output == null) {
+			openOutput();
+		}
+		try {
+			writeRecord(this.output, operation, name, path);
+			this.output.flush();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.recordCount++;
+	}
+
+	private void writeRecord(DataOutputStream target, byte operation, String name, String path) throws IOException {
+		this.recordBuffer.reset();
+		this.record.writeByte(operation);
+		this.record.writeLong(++this.sequence);
+		this.record.writeLong(System.currentTimeMillis());
+		if (name != null) {
+			this.record.writeUTF(name);
+		}
+		if (path != null) {
+			this.record.writeUTF(path);
+		}
+		CRC32 crc = new CRC32();
+		byte[] payload = this.recordBuffer.toByteArray();
+		crc.update(payload, 0, payload.length);
+		target.writeInt(payload.length);
+		target.writeLong(crc.getValue());
+		target.write(payload);
+	}
+
+	public synchronized boolean needsCompaction(int liveCount) {
+		return this.recordCount > (long) liveCount * 2 + this.compactionThreshold;
+	}
+
+	public synchronized void compact(Map<String, File> snapshots) {
+		File temp = new File(this.file.getPath() + ".compact");
+		long written = 0;
+		try (FileOutputStream stream = new FileOutputStream(temp)) {
+			DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+			for (Map.Entry<String, File> entry : snapshots.entrySet()) {
+				writeRecord(compacted, SAVE, entry.getKey(), entry.getValue().getPath());
+				written++;
+			}
+			compacted.flush();
+			// the rewritten manifest replaces the only copy of the index, so it must be on disk first
+			stream.getChannel().force(true);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		closeOutput();
+		try {
+			try {
+				Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			FileSync.forceParent(this.file.toPath());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.recordCount = written;
+		openOutput();
+	}
+
+	private void openOutput() {
+		try {
+			// a new manifest file only survives a crash once its directory entry is synced
+			this.published = this.file.isFile();
+			FileOutputStream stream = new FileOutputStream(this.file, true);
+			this.channel = stream.getChannel();
+			this.output = new DataOutputStream(new BufferedOutputStream(stream, 8 * 1024));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void closeOutput() {
+		if (this.output != null) {
+			try {
+				this.output.close();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.output = null;
+			this.channel = null;
+		}
+	}
+
+	public synchronized long getRecordCount() {
+		return this.recordCount;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	@Override
+	public synchronized void close() {
+		closeOutput();
+	}
+
+}
@@ -24,6 +24,10 @@ import java.util.Map;
 
 public interface SnapshotStorage<T> {
 
+	default Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		return new Snapshot<>(target, strategy);
+	}
+
 	void save(String name, Snapshot<T> snapshot);
 
 	Snapshot<T> load(String name);
@@ -24,4 +24,14 @@ public interface SnapshotStrategy<T> {
 
 	T deepClone(T obj);
 
+	// true when deepClone is a plain full copy, so a storage may take its own encoded copy instead
+	default boolean copiesFully() {
+		return false;
+	}
+
+	// true when copies may share subtrees with each other, such copies must never be aliased into a live target
+	default boolean sharesState() {
+		return false;
+	}
+
 }
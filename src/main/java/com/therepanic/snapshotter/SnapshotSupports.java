@@ -0,0 +1,64 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+public final class SnapshotSupports {
+
+	public static final String SUFFIX = "_SnapshotSupport";
+
+	private static final ClassValue<SnapshotSupport<?>> SUPPORTS = new ClassValue<SnapshotSupport<?>>() {
+		@Override
+		protected SnapshotSupport<?> computeValue(Class<?> type) {
+			return load(type);
+		}
+	};
+
+	private SnapshotSupports() {
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> SnapshotSupport<T> find(Class<?> type) {
+		return (SnapshotSupport<T>) SUPPORTS.get(type);
+	}
+
+	public static String supportClassName(String binaryName) {
+		int packageEnd = binaryName.lastIndexOf('.');
+		return binaryName.substring(0, packageEnd + 1) + binaryName.substring(packageEnd + 1).replace('$', '_')
+				+ SUFFIX;
+	}
+
+	private static SnapshotSupport<?> load(Class<?> type) {
+		if (!type.isAnnotationPresent(Snapshottable.class)) {
+			return null;
+		}
+		try {
+			Class<?> supportType = Class.forName(supportClassName(type.getName()), true, type.getClassLoader());
+			return (SnapshotSupport<?>) supportType.getField("INSTANCE").get(null);
+		}
+		catch (ClassNotFoundException e) {
+			return null;
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot load snapshot support for " + type.getName(), e);
+		}
+	}
+
+}
@@ -30,9 +30,7 @@ import java.util.Map;
 public interface Snapshotter<T> {
 
 	static <T> DefaultSnapshotter<T> of(T target) {
-		Kryo newKryo = new Kryo();
-		newKryo.setRegistrationRequired(false);
-		return new DefaultSnapshotter<>(target, new MemorySnapshotStorage<>(), new KryoSnapshotStrategy<>(newKryo),
+		return new DefaultSnapshotter<>(target, new MemorySnapshotStorage<>(), defaultStrategy(target),
 				new ArrayList<>());
 	}
 
@@ -41,15 +39,23 @@ public interface Snapshotter<T> {
 	}
 
 	static <T> DefaultSnapshotter<T> of(T target, SnapshotStorage<T> storage) {
-		Kryo newKryo = new Kryo();
-		newKryo.setRegistrationRequired(false);
-		return new DefaultSnapshotter<>(target, storage, new KryoSnapshotStrategy<>(newKryo), new ArrayList<>());
+		return new DefaultSnapshotter<>(target, storage, defaultStrategy(target), new ArrayList<>());
 	}
 
 	static <T> DefaultSnapshotter<T> of(T target, SnapshotStorage<T> storage, SnapshotStrategy<T> strategy) {
 		return new DefaultSnapshotter<>(target, storage, strategy, new ArrayList<>());
 	}
 
+	static <T> SnapshotStrategy<T> defaultStrategy(T target) {
+		SnapshotSupport<T> support = SnapshotSupports.find(target.getClass());
+		if (support != null) {
+			return support;
+		}
+		Kryo newKryo = new Kryo();
+		newKryo.setRegistrationRequired(false);
+		return new KryoSnapshotStrategy<>(newKryo);
+	}
+
 	void save();
 
 	void save(String name);
@@ -22,6 +22,7 @@ package com.therepanic.snapshotter;
 
 import java.time.Duration;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
@@ -43,6 +44,16 @@ public class SnapshotterScheduler<T> implements AutoCloseable {
 
 	private final ConcurrentLinkedQueue<Future<?>> tasks;
 
+	private final LongAdder totalCaptureNanos = new LongAdder();
+
+	private final LongAdder totalPersistNanos = new LongAdder();
+
+	private final LongAdder saveCount = new LongAdder();
+
+	private volatile long lastCaptureNanos;
+
+	private volatile long lastPersistNanos;
+
 	private SnapshotterScheduler(ScheduledExecutorService scheduler, boolean ownsScheduler, Snapshotter<T> snapshotter,
 			Duration interval, BooleanSupplier condition, Supplier<String> nameGenerator, Duration initialDelay,
 			ConcurrentLinkedQueue<Future<?>> tasks) {
@@ -74,14 +85,42 @@ public class SnapshotterScheduler<T> implements AutoCloseable {
 	public void start() {
 		Future<?> task = this.scheduler.scheduleAtFixedRate(() -> {
 			if (this.condition.getAsBoolean()) {
-				synchronized (this.snapshotter) {
-					this.snapshotter.save(this.nameGenerator.get());
-				}
+				saveSnapshot();
 			}
 		}, this.initialDelay.toMillis(), this.interval.toMillis(), TimeUnit.MILLISECONDS);
 		this.tasks.add(task);
 	}
 
+	private void saveSnapshot() {
+		String name = this.nameGenerator.get();
+		long start = System.nanoTime();
+		long captured;
+		if (this.snapshotter instanceof DefaultSnapshotter) {
+			DefaultSnapshotter<T> detached = (DefaultSnapshotter<T>) this.snapshotter;
+			Snapshot<T> snapshot;
+			// only the copy holds the lock, encoding and I/O run unlocked and
+			// DefaultSnapshotter serializes them with its other storage access
+			synchronized (this.snapshotter) {
+				snapshot = detached.capture();
+			}
+			captured = System.nanoTime();
+			detached.save(name, snapshot);
+		}
+		else {
+			// other snapshotters cannot capture detached, so the whole save holds the lock
+			synchronized (this.snapshotter) {
+				this.snapshotter.save(name);
+			}
+			captured = System.nanoTime();
+		}
+		long persisted = System.nanoTime();
+		this.lastCaptureNanos = captured - start;
+		this.lastPersistNanos = persisted - captured;
+		this.totalCaptureNanos.add(this.lastCaptureNanos);
+		this.totalPersistNanos.add(this.lastPersistNanos);
+		this.saveCount.increment();
+	}
+
 	public void stopAll() {
 		for (Future<?> task : this.tasks) {
 			task.cancel(false);
@@ -93,6 +132,26 @@ public class SnapshotterScheduler<T> implements AutoCloseable {
 		return !this.tasks.isEmpty();
 	}
 
+	public Duration getLastCaptureDuration() {
+		return Duration.ofNanos(this.lastCaptureNanos);
+	}
+
+	public Duration getLastPersistDuration() {
+		return Duration.ofNanos(this.lastPersistNanos);
+	}
+
+	public Duration getTotalCaptureDuration() {
+		return Duration.ofNanos(this.totalCaptureNanos.sum());
+	}
+
+	public Duration getTotalPersistDuration() {
+		return Duration.ofNanos(this.totalPersistNanos.sum());
+	}
+
+	public long getSaveCount() {
+		return this.saveCount.sum();
+	}
+
 	@Override
 	public void close() throws Exception {
 		stopAll();
@@ -0,0 +1,110 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class StripedSnapshotLayout implements SnapshotLayout {
+
+	public static final int DEFAULT_DEPTH = 2;
+
+	private static final int MAX_DEPTH = 6;
+
+	private static final int MAX_FILE_NAME_LENGTH = 200;
+
+	private final List<File> roots;
+
+	private final int depth;
+
+	public StripedSnapshotLayout(List<File> roots, int depth) {
+		if (roots.isEmpty()) {
+			throw new IllegalArgumentException("At least one root directory is required");
+		}
+		if (depth < 0 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Depth must be between 0 and " + MAX_DEPTH);
+		}
+		this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+		this.depth = depth;
+	}
+
+	public StripedSnapshotLayout(List<File> roots) {
+		this(roots, DEFAULT_DEPTH);
+	}
+
+	public StripedSnapshotLayout(File root) {
+		this(Collections.singletonList(root));
+	}
+
+	@Override
+	public File resolve(String name) {
+		long hash = hash(name);
+		// the top 16 bits pick the root and each lower byte picks one 256-way subdirectory per level
+		File directory = this.roots.get((int) (hash >>> 48) % this.roots.size());
+		for (int level = 0; level < this.depth; level++) {
+			directory = new File(directory, String.format("%02x", (hash >>> (level * 8)) & 0xff));
+		}
+		return new File(directory, fileName(name, hash));
+	}
+
+	private static String fileName(String name, long hash) {
+		String encoded;
+		try {
+			encoded = URLEncoder.encode(name, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		// URLEncoder leaves '*' and '.' alone, which would allow wildcards and "." or ".." path segments
+		encoded = encoded.replace("*", "%2A");
+		if (encoded.equals(".") || encoded.equals("..")) {
+			encoded = encoded.replace(".", "%2E");
+		}
+		if (encoded.length() > MAX_FILE_NAME_LENGTH) {
+			// long names keep a readable prefix and stay unique through the hash suffix
+			encoded = encoded.substring(0, MAX_FILE_NAME_LENGTH - 17) + "-" + String.format("%016x", hash);
+		}
+		return encoded;
+	}
+
+	private static long hash(String name) {
+		// FNV-1a, stable across JVMs so existing files keep resolving after a restart
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	public List<File> getRoots() {
+		return this.roots;
+	}
+
+	public int getDepth() {
+		return this.depth;
+	}
+
+}
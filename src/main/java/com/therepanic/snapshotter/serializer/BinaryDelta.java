@@ -0,0 +1,193 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import java.io.ByteArrayOutputStream;
+
+public final class BinaryDelta {
+
+	private static final int BLOCK_SIZE = 16;
+
+	private static final int COPY = 0;
+
+	private static final int INSERT = 1;
+
+	private BinaryDelta() {
+	}
+
+	public static byte[] diff(byte[] base, byte[] target) {
+		int[] index = indexBlocks(base);
+		int mask = index.length - 1;
+		ByteArrayOutputStream delta = new ByteArrayOutputStream(64);
+		writeVarInt(delta, target.length);
+		int literalStart = 0;
+		int position = 0;
+		while (position + BLOCK_SIZE <= target.length) {
+			int candidate = index[hash(target, position) & mask] - 1;
+			if (candidate < 0 || !regionMatches(base, candidate, target, position, BLOCK_SIZE)) {
+				position++;
+				continue;
+			}
+			int start = candidate;
+			int targetStart = position;
+			while (start > 0 && targetStart > literalStart && base[start - 1] == target[targetStart - 1]) {
+				start--;
+				targetStart--;
+			}
+			int end = candidate + BLOCK_SIZE;
+			int targetEnd = position + BLOCK_SIZE;
+			while (end < base.length && targetEnd < target.length && base[end] == target[targetEnd]) {
+				end++;
+				targetEnd++;
+			}
+			writeInsert(delta, target, literalStart, targetStart);
+			delta.write(COPY);
+			writeVarInt(delta, start);
+			writeVarInt(delta, end - start);
+			literalStart = targetEnd;
+			position = targetEnd;
+		}
+		writeInsert(delta, target, literalStart, target.length);
+		return delta.toByteArray();
+	}
+
+	public static byte[] apply(byte[] base, byte[] delta) {
+		int[] position = { 0 };
+		int targetLength = readVarInt(delta, position);
+		// no delta byte can produce more than the whole base, so a corrupted header cannot request an
+		// arbitrarily large buffer
+		if (targetLength > (long) delta.length * Math.max(base.length, 1)) {
+			throw new IllegalStateException("Corrupted delta: declared length " + targetLength
+					+ " cannot be produced from a " + delta.length + " byte delta");
+		}
+		byte[] target = new byte[targetLength];
+		int written = 0;
+		while (position[0] < delta.length) {
+			int op = delta[position[0]++];
+			if (op == COPY) {
+				int offset = readVarInt(delta, position);
+				int length = readVarInt(delta, position);
+				if ((long) offset + length > base.length) {
+					throw new IllegalStateException("Corrupted delta: copy of " + length + " bytes at offset " + offset
+							+ " exceeds the " + base.length + " byte base");
+				}
+				checkFits(target, written, length);
+				System.arraycopy(base, offset, target, written, length);
+				written += length;
+			}
+			else if (op == INSERT) {
+				int length = readVarInt(delta, position);
+				if (length > delta.length - position[0]) {
+					throw new IllegalStateException("Corrupted delta: insert of " + length + " bytes exceeds the "
+							+ (delta.length - position[0]) + " bytes left in the delta");
+				}
+				checkFits(target, written, length);
+				System.arraycopy(delta, position[0], target, written, length);
+				position[0] += length;
+				written += length;
+			}
+			else {
+				throw new IllegalStateException("Corrupted delta: unknown operation " + op);
+			}
+		}
+		if (written != target.length) {
+			throw new IllegalStateException("Corrupted delta: expected " + target.length + " bytes, got " + written);
+		}
+		return target;
+	}
+
+	private static void checkFits(byte[] target, int written, int length) {
+		if (length > target.length - written) {
+			throw new IllegalStateException("Corrupted delta: operation writes past the declared length "
+					+ target.length);
+		}
+	}
+
+	private static int[] indexBlocks(byte[] base) {
+		int blocks = base.length / BLOCK_SIZE;
+		int[] index = new int[Integer.highestOneBit(Math.max(blocks, 1) * 2 - 1) << 1];
+		int mask = index.length - 1;
+		for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+			int slot = hash(base, offset) & mask;
+			if (index[slot] == 0) {
+				// stored off by one so that zero marks an empty slot
+				index[slot] = offset + 1;
+			}
+		}
+		return index;
+	}
+
+	private static int hash(byte[] data, int offset) {
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+			hash = hash * 31 + data[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean regionMatches(byte[] first, int firstOffset, byte[] second, int secondOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (first[firstOffset + i] != second[secondOffset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeInsert(ByteArrayOutputStream delta, byte[] target, int from, int to) {
+		if (to > from) {
+			delta.write(INSERT);
+			writeVarInt(delta, to - from);
+			delta.write(target, from, to - from);
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] position) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			if (position[0] >= data.length) {
+				throw new IllegalStateException("Corrupted delta: truncated length");
+			}
+			if (shift > 28) {
+				throw new IllegalStateException("Corrupted delta: length does not fit in an int");
+			}
+			current = data[position[0]++];
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((current & 0x80) != 0);
+		if (value < 0) {
+			throw new IllegalStateException("Corrupted delta: negative length " + value);
+		}
+		return value;
+	}
+
+}
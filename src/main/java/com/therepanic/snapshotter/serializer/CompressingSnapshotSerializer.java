@@ -0,0 +1,74 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import com.therepanic.snapshotter.SnapshotCodec;
+import com.therepanic.snapshotter.SnapshotSerializer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CompressingSnapshotSerializer<T> implements SnapshotSerializer<T> {
+
+	private final SnapshotSerializer<T> delegate;
+
+	private final SnapshotCodec codec;
+
+	private final LongAdder uncompressedBytes = new LongAdder();
+
+	private final LongAdder compressedBytes = new LongAdder();
+
+	public CompressingSnapshotSerializer(SnapshotSerializer<T> delegate, SnapshotCodec codec) {
+		this.delegate = delegate;
+		this.codec = codec;
+	}
+
+	public CompressingSnapshotSerializer(SnapshotSerializer<T> delegate) {
+		this(delegate, new DeflaterSnapshotCodec());
+	}
+
+	@Override
+	public byte[] serialize(T state) {
+		byte[] data = this.delegate.serialize(state);
+		byte[] compressed = this.codec.compress(data);
+		this.uncompressedBytes.add(data.length);
+		this.compressedBytes.add(compressed.length);
+		return compressed;
+	}
+
+	@Override
+	public T deserialize(byte[] data) {
+		return this.delegate.deserialize(this.codec.decompress(data));
+	}
+
+	public long getUncompressedBytes() {
+		return this.uncompressedBytes.sum();
+	}
+
+	public long getCompressedBytes() {
+		return this.compressedBytes.sum();
+	}
+
+	public double getCompressionRatio() {
+		long compressed = this.compressedBytes.sum();
+		return compressed == 0 ? 1.0 : (double) this.uncompressedBytes.sum() / compressed;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class ContentChunker {
+
+	public static final int DEFAULT_AVERAGE_SIZE = 2048;
+
+	private static final long[] GEAR = new long[256];
+
+	static {
+		// fixed seed so that chunk boundaries are stable across runs
+		Random random = new Random(0x5eed5eedL);
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private final int minSize;
+
+	private final int maxSize;
+
+	private final long mask;
+
+	public ContentChunker(int averageSize) {
+		if (averageSize < 64 || Integer.bitCount(averageSize) != 1) {
+			throw new IllegalArgumentException("Average chunk size must be a power of two >= 64: " + averageSize);
+		}
+		this.minSize = averageSize / 4;
+		this.maxSize = averageSize * 4;
+		this.mask = (long) (averageSize - 1) << (64 - Integer.numberOfTrailingZeros(averageSize));
+	}
+
+	public ContentChunker() {
+		this(DEFAULT_AVERAGE_SIZE);
+	}
+
+	public List<byte[]> split(byte[] data) {
+		List<byte[]> chunks = new ArrayList<>(data.length / (this.minSize * 4) + 1);
+		int start = 0;
+		while (start < data.length) {
+			int end = nextBoundary(data, start);
+			chunks.add(Arrays.copyOfRange(data, start, end));
+			start = end;
+		}
+		return chunks;
+	}
+
+	private int nextBoundary(byte[] data, int start) {
+		int limit = Math.min(data.length, start + this.maxSize);
+		int position = start + this.minSize;
+		if (position >= limit) {
+			return limit;
+		}
+		long hash = 0;
+		for (; position < limit; position++) {
+			hash = (hash << 1) + GEAR[data[position] & 0xFF];
+			if ((hash & this.mask) == 0) {
+				return position + 1;
+			}
+		}
+		return limit;
+	}
+
+}
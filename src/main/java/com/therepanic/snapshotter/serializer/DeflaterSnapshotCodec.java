@@ -0,0 +1,180 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import com.therepanic.snapshotter.SnapshotCodec;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DeflaterSnapshotCodec implements SnapshotCodec {
+
+	private static final int HEADER_SIZE = 4;
+
+	// deflate cannot expand a byte of input into more than 1032 bytes of output
+	private static final int MAX_INFLATION_RATIO = 1032;
+
+	private final int level;
+
+	// bounded queues rather than a Kryo pool, so a codec the pool has no room for is ended instead of
+	// holding native zlib memory until it is finalized
+	private final BlockingQueue<Compressor> compressorPool;
+
+	private final BlockingQueue<Inflater> inflaterPool;
+
+	public DeflaterSnapshotCodec(int level, int maximumCapacity) {
+		if (level != Deflater.DEFAULT_COMPRESSION
+				&& (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		if (maximumCapacity < 1) {
+			throw new IllegalArgumentException("Maximum capacity must be positive: " + maximumCapacity);
+		}
+		this.level = level;
+		this.compressorPool = new ArrayBlockingQueue<>(maximumCapacity);
+		this.inflaterPool = new ArrayBlockingQueue<>(maximumCapacity);
+	}
+
+	public DeflaterSnapshotCodec(int level) {
+		this(level, Runtime.getRuntime().availableProcessors());
+	}
+
+	public DeflaterSnapshotCodec() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	@Override
+	public byte[] compress(byte[] data) {
+		Compressor compressor = this.compressorPool.poll();
+		if (compressor == null) {
+			compressor = new Compressor(new Deflater(this.level));
+		}
+		try {
+			Deflater deflater = compressor.deflater;
+			deflater.reset();
+			deflater.setInput(data);
+			deflater.finish();
+			byte[] buffer = compressor.buffer(HEADER_SIZE + data.length / 2 + 64);
+			writeLength(buffer, data.length);
+			int length = HEADER_SIZE;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = compressor.grow();
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return Arrays.copyOf(buffer, length);
+		}
+		finally {
+			if (!this.compressorPool.offer(compressor)) {
+				compressor.deflater.end();
+			}
+		}
+	}
+
+	@Override
+	public byte[] decompress(byte[] data) {
+		Inflater inflater = this.inflaterPool.poll();
+		if (inflater == null) {
+			inflater = new Inflater();
+		}
+		try {
+			if (data.length < HEADER_SIZE) {
+				throw new IllegalStateException("Compressed snapshot is truncated");
+			}
+			int expected = readLength(data);
+			// a corrupted header must not be able to request an arbitrarily large buffer
+			if (expected < 0 || expected > (long) (data.length - HEADER_SIZE) * MAX_INFLATION_RATIO) {
+				throw new IllegalStateException("Compressed snapshot declares an invalid length: " + expected);
+			}
+			inflater.reset();
+			inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+			byte[] result = new byte[expected];
+			int length = 0;
+			while (length < result.length) {
+				int inflated = inflater.inflate(result, length, result.length - length);
+				if (inflated == 0) {
+					if (inflater.needsDictionary()) {
+						throw new IllegalStateException("Compressed snapshot requires a preset dictionary");
+					}
+					throw new IllegalStateException("Compressed snapshot is truncated");
+				}
+				length += inflated;
+			}
+			// the declared length must cover the whole stream, anything after it means the data is corrupted
+			if (!inflater.finished() && (inflater.inflate(new byte[1]) > 0 || !inflater.finished())) {
+				throw new IllegalStateException("Compressed snapshot does not end at its declared length");
+			}
+			if (inflater.getRemaining() > 0) {
+				throw new IllegalStateException("Compressed snapshot has trailing bytes");
+			}
+			return result;
+		}
+		catch (DataFormatException e) {
+			throw new IllegalStateException("Compressed snapshot is corrupted", e);
+		}
+		finally {
+			if (!this.inflaterPool.offer(inflater)) {
+				inflater.end();
+			}
+		}
+	}
+
+	private static void writeLength(byte[] buffer, int length) {
+		buffer[0] = (byte) (length >>> 24);
+		buffer[1] = (byte) (length >>> 16);
+		buffer[2] = (byte) (length >>> 8);
+		buffer[3] = (byte) length;
+	}
+
+	private static int readLength(byte[] data) {
+		return ((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16) | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+	}
+
+	private static final class Compressor {
+
+		private final Deflater deflater;
+
+		private byte[] buffer = new byte[0];
+
+		private Compressor(Deflater deflater) {
+			this.deflater = deflater;
+		}
+
+		private byte[] buffer(int minimumSize) {
+			if (this.buffer.length < minimumSize) {
+				this.buffer = new byte[minimumSize];
+			}
+			return this.buffer;
+		}
+
+		private byte[] grow() {
+			this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+			return this.buffer;
+		}
+
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import com.therepanic.snapshotter.SnapshotSerializer;
+
+import java.util.function.Supplier;
+
+public class KryoSnapshotSerializer<T> implements SnapshotSerializer<T> {
+
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private final Class<T> type;
+
+	private final Pool<Kryo> kryoPool;
+
+	private final Pool<Output> outputPool;
+
+	private final Pool<Input> inputPool;
+
+	public KryoSnapshotSerializer(Class<T> type, Supplier<Kryo> kryoFactory, int maximumCapacity) {
+		this.type = type;
+		this.kryoPool = new Pool<Kryo>(true, false, maximumCapacity) {
+			@Override
+			protected Kryo create() {
+				return kryoFactory.get();
+			}
+		};
+		this.outputPool = new Pool<Output>(true, false, maximumCapacity) {
+			@Override
+			protected Output create() {
+				return new Output(DEFAULT_BUFFER_SIZE, -1);
+			}
+		};
+		this.inputPool = new Pool<Input>(true, false, maximumCapacity) {
+			@Override
+			protected Input create() {
+				return new Input();
+			}
+		};
+	}
+
+	public KryoSnapshotSerializer(Class<T> type, Supplier<Kryo> kryoFactory) {
+		this(type, kryoFactory, Runtime.getRuntime().availableProcessors());
+	}
+
+	public KryoSnapshotSerializer(Class<T> type) {
+		this(type, KryoSnapshotSerializer::createDefaultKryo);
+	}
+
+	public KryoSnapshotSerializer() {
+		this(null);
+	}
+
+	private static Kryo createDefaultKryo() {
+		Kryo kryo = new Kryo();
+		kryo.setRegistrationRequired(false);
+		return kryo;
+	}
+
+	@Override
+	public byte[] serialize(T state) {
+		Kryo kryo = this.kryoPool.obtain();
+		Output output = this.outputPool.obtain();
+		try {
+			output.setPosition(0);
+			if (this.type != null) {
+				kryo.writeObject(output, state);
+			}
+			else {
+				kryo.writeClassAndObject(output, state);
+			}
+			return output.toBytes();
+		}
+		finally {
+			this.outputPool.free(output);
+			this.kryoPool.free(kryo);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T deserialize(byte[] data) {
+		Kryo kryo = this.kryoPool.obtain();
+		Input input = this.inputPool.obtain();
+		try {
+			input.setBuffer(data);
+			return this.type != null ? kryo.readObject(input, this.type) : (T) kryo.readClassAndObject(input);
+		}
+		finally {
+			this.inputPool.free(input);
+			this.kryoPool.free(kryo);
+		}
+	}
+
+}
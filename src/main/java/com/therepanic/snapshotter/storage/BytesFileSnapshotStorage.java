@@ -21,23 +21,39 @@
 package com.therepanic.snapshotter.storage;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.therepanic.snapshotter.AbstractFileSnapshotStorage;
+import com.therepanic.snapshotter.FileStorageOptions;
 import com.therepanic.snapshotter.Snapshot;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 
 public class BytesFileSnapshotStorage<T> extends AbstractFileSnapshotStorage<T> {
 
 	private final Kryo kryo;
 
-	public BytesFileSnapshotStorage(LinkedHashMap<String, File> snapshots, Kryo kryo) {
-		super(snapshots);
+	public BytesFileSnapshotStorage(LinkedHashMap<String, File> snapshots, Kryo kryo, FileStorageOptions options) {
+		super(snapshots, options);
 		this.kryo = kryo;
 	}
 
+	public BytesFileSnapshotStorage(Kryo kryo, FileStorageOptions options) {
+		this(new LinkedHashMap<>(), kryo, options);
+	}
+
+	public BytesFileSnapshotStorage(FileStorageOptions options) {
+		this(createDefaultKryo(), options);
+	}
+
+	public BytesFileSnapshotStorage(LinkedHashMap<String, File> snapshots, Kryo kryo) {
+		this(snapshots, kryo, FileStorageOptions.defaults());
+	}
+
 	public BytesFileSnapshotStorage(Kryo kryo) {
 		this(new LinkedHashMap<>(), kryo);
 	}
@@ -59,16 +75,40 @@ public class BytesFileSnapshotStorage<T> extends AbstractFileSnapshotStorage<T>
 	@Override
 	public byte[] encode(Snapshot<T> snapshot) {
 		try (Output output = new Output(1024, -1)) {
-			this.kryo.writeObject(output, snapshot);
+			// a Kryo instance is not thread-safe, so concurrent saves and loads take turns on it
+			synchronized (this.kryo) {
+				this.kryo.writeObject(output, snapshot);
+			}
 			return output.toBytes();
 		}
 	}
 
+	@Override
+	protected void encode(Snapshot<T> snapshot, OutputStream outputStream) {
+		try (Output output = new Output(outputStream, 64 * 1024)) {
+			synchronized (this.kryo) {
+				this.kryo.writeObject(output, snapshot);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected Snapshot<T> decode(ByteBuffer buffer) {
+		try (Input input = new ByteBufferInput(buffer)) {
+			synchronized (this.kryo) {
+				return (Snapshot<T>) this.kryo.readObject(input, Snapshot.class);
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Snapshot<T> decode(byte[] data) {
 		try (Input input = new Input(data)) {
-			return (Snapshot<T>) this.kryo.readObject(input, Snapshot.class);
+			synchronized (this.kryo) {
+				return (Snapshot<T>) this.kryo.readObject(input, Snapshot.class);
+			}
 		}
 	}
 
@@ -0,0 +1,189 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.EncodedSnapshot;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
+import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
+import com.therepanic.snapshotter.serializer.ContentChunker;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class DedupSnapshotStorage<T> implements SnapshotStorage<T> {
+
+	private final LinkedHashMap<String, Recipe> snapshots = new LinkedHashMap<>();
+
+	private final SnapshotSerializer<T> serializer;
+
+	private final ChunkStore chunkStore;
+
+	private final ContentChunker chunker;
+
+	private final Function<byte[], T> decoder;
+
+	public DedupSnapshotStorage(SnapshotSerializer<T> serializer, ChunkStore chunkStore, ContentChunker chunker) {
+		this.serializer = serializer;
+		this.chunkStore = chunkStore;
+		this.chunker = chunker;
+		this.decoder = serializer::deserialize;
+	}
+
+	public DedupSnapshotStorage(SnapshotSerializer<T> serializer, ChunkStore chunkStore) {
+		this(serializer, chunkStore, new ContentChunker());
+	}
+
+	public DedupSnapshotStorage(SnapshotSerializer<T> serializer) {
+		this(serializer, new MemoryChunkStore());
+	}
+
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		return new EncodedSnapshot<>(this.serializer.serialize(target), this.decoder);
+	}
+
+	@Override
+	public void save(String name, Snapshot<T> snapshot) {
+		byte[] data = encode(snapshot);
+		List<byte[]> chunks = this.chunker.split(data);
+		String[] hashes = new String[chunks.size()];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = ChunkHashes.sha256(chunks.get(i));
+		}
+		synchronized (this) {
+			// retain before releasing so chunks shared with the replaced snapshot survive
+			for (int i = 0; i < hashes.length; i++) {
+				this.chunkStore.retain(hashes[i], chunks.get(i));
+			}
+			Recipe previous = this.snapshots.put(name, new Recipe(hashes, data.length));
+			if (previous != null) {
+				release(previous);
+			}
+		}
+	}
+
+	private byte[] encode(Snapshot<T> snapshot) {
+		if (snapshot instanceof EncodedSnapshot && ((EncodedSnapshot<T>) snapshot).getDecoder() == this.decoder) {
+			return ((EncodedSnapshot<T>) snapshot).getData();
+		}
+		return this.serializer.serialize(snapshot.getState());
+	}
+
+	private void release(Recipe recipe) {
+		for (String hash : recipe.hashes) {
+			this.chunkStore.release(hash);
+		}
+	}
+
+	@Override
+	public Snapshot<T> load(String name) {
+		byte[] data;
+		synchronized (this) {
+			Recipe recipe = this.snapshots.get(name);
+			if (recipe == null) {
+				return null;
+			}
+			data = assemble(recipe);
+		}
+		return new Snapshot<>(this.serializer.deserialize(data));
+	}
+
+	private byte[] assemble(Recipe recipe) {
+		byte[] data = new byte[recipe.length];
+		int position = 0;
+		for (String hash : recipe.hashes) {
+			byte[] chunk = this.chunkStore.get(hash);
+			if (chunk == null) {
+				throw new IllegalStateException("Missing chunk " + hash);
+			}
+			System.arraycopy(chunk, 0, data, position, chunk.length);
+			position += chunk.length;
+		}
+		return data;
+	}
+
+	@Override
+	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
+		String lastName;
+		synchronized (this) {
+			lastName = this.snapshots.keySet().stream().reduce((first, second) -> second).orElse(null);
+		}
+		if (lastName == null) {
+			return null;
+		}
+		return new AbstractMap.SimpleEntry<>(lastName, load(lastName));
+	}
+
+	@Override
+	public synchronized boolean hasSnapshot(String name) {
+		return this.snapshots.containsKey(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (Recipe recipe : this.snapshots.values()) {
+			release(recipe);
+		}
+		this.snapshots.clear();
+	}
+
+	@Override
+	public synchronized void remove(String name) {
+		Recipe recipe = this.snapshots.remove(name);
+		if (recipe != null) {
+			release(recipe);
+		}
+	}
+
+	public ChunkStore getChunkStore() {
+		return this.chunkStore;
+	}
+
+	public synchronized long getLogicalBytes() {
+		long bytes = 0;
+		for (Recipe recipe : this.snapshots.values()) {
+			bytes += recipe.length;
+		}
+		return bytes;
+	}
+
+	private static final class Recipe {
+
+		private final String[] hashes;
+
+		private final int length;
+
+		private Recipe(String[] hashes, int length) {
+			this.hashes = hashes;
+			this.length = length;
+		}
+
+	}
+
+}
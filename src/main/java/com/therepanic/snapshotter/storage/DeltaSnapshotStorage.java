@@ -0,0 +1,245 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.EncodedSnapshot;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
+import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
+import com.therepanic.snapshotter.serializer.BinaryDelta;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class DeltaSnapshotStorage<T> implements SnapshotStorage<T> {
+
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 16;
+
+	public static final double DEFAULT_MAX_CHAIN_RATIO = 1.0;
+
+	private final List<Entry> chain = new ArrayList<>();
+
+	private final Map<String, Entry> snapshots = new HashMap<>();
+
+	private final SnapshotSerializer<T> serializer;
+
+	private final Function<byte[], T> decoder;
+
+	private final int keyframeInterval;
+
+	private final double maxChainRatio;
+
+	private byte[] lastData;
+
+	public DeltaSnapshotStorage(SnapshotSerializer<T> serializer, int keyframeInterval, double maxChainRatio) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+		}
+		if (maxChainRatio <= 0) {
+			throw new IllegalArgumentException("Max chain ratio must be positive: " + maxChainRatio);
+		}
+		this.serializer = serializer;
+		this.decoder = serializer::deserialize;
+		this.keyframeInterval = keyframeInterval;
+		this.maxChainRatio = maxChainRatio;
+	}
+
+	public DeltaSnapshotStorage(SnapshotSerializer<T> serializer, int keyframeInterval) {
+		this(serializer, keyframeInterval, DEFAULT_MAX_CHAIN_RATIO);
+	}
+
+	public DeltaSnapshotStorage(SnapshotSerializer<T> serializer) {
+		this(serializer, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		return new EncodedSnapshot<>(this.serializer.serialize(target), this.decoder);
+	}
+
+	@Override
+	public void save(String name, Snapshot<T> snapshot) {
+		byte[] data = encode(snapshot);
+		synchronized (this) {
+			// re-saving a name moves it to the end of the chain, deltas are always
+			// taken against the most recent snapshot
+			remove(name);
+			Entry entry;
+			if (this.chain.isEmpty() || needsKeyframe()) {
+				entry = new Entry(name, true, data);
+			}
+			else {
+				entry = new Entry(name, false, BinaryDelta.diff(this.lastData, data));
+			}
+			this.chain.add(entry);
+			this.snapshots.put(name, entry);
+			this.lastData = data;
+		}
+	}
+
+	private boolean needsKeyframe() {
+		long chainBytes = 0;
+		int deltas = 0;
+		for (int i = this.chain.size() - 1; i >= 0; i--) {
+			Entry entry = this.chain.get(i);
+			if (entry.keyframe) {
+				return deltas + 1 >= this.keyframeInterval
+						|| chainBytes > entry.data.length * this.maxChainRatio;
+			}
+			chainBytes += entry.data.length;
+			deltas++;
+		}
+		return true;
+	}
+
+	private byte[] encode(Snapshot<T> snapshot) {
+		if (snapshot instanceof EncodedSnapshot && ((EncodedSnapshot<T>) snapshot).getDecoder() == this.decoder) {
+			return ((EncodedSnapshot<T>) snapshot).getData();
+		}
+		return this.serializer.serialize(snapshot.getState());
+	}
+
+	private byte[] materialize(int position) {
+		if (position == this.chain.size() - 1) {
+			return this.lastData;
+		}
+		int keyframe = position;
+		while (!this.chain.get(keyframe).keyframe) {
+			keyframe--;
+		}
+		byte[] data = this.chain.get(keyframe).data;
+		for (int i = keyframe + 1; i <= position; i++) {
+			data = BinaryDelta.apply(data, this.chain.get(i).data);
+		}
+		return data;
+	}
+
+	@Override
+	public Snapshot<T> load(String name) {
+		byte[] data;
+		synchronized (this) {
+			Entry entry = this.snapshots.get(name);
+			if (entry == null) {
+				return null;
+			}
+			data = materialize(this.chain.indexOf(entry));
+		}
+		return new Snapshot<>(this.serializer.deserialize(data));
+	}
+
+	@Override
+	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
+		String name;
+		byte[] data;
+		synchronized (this) {
+			if (this.chain.isEmpty()) {
+				return null;
+			}
+			name = this.chain.get(this.chain.size() - 1).name;
+			data = this.lastData;
+		}
+		return new AbstractMap.SimpleEntry<>(name, new Snapshot<>(this.serializer.deserialize(data)));
+	}
+
+	@Override
+	public synchronized boolean hasSnapshot(String name) {
+		return this.snapshots.containsKey(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.chain.clear();
+		this.snapshots.clear();
+		this.lastData = null;
+	}
+
+	@Override
+	public synchronized void remove(String name) {
+		Entry entry = this.snapshots.remove(name);
+		if (entry == null) {
+			return;
+		}
+		int position = this.chain.indexOf(entry);
+		int last = this.chain.size() - 1;
+		if (position < last && !this.chain.get(position + 1).keyframe) {
+			// the successor is stored against the removed entry, rebase it on the
+			// new predecessor or promote it to a keyframe
+			Entry successor = this.chain.get(position + 1);
+			byte[] successorData = materialize(position + 1);
+			Entry rebased;
+			if (entry.keyframe) {
+				rebased = new Entry(successor.name, true, successorData);
+			}
+			else {
+				rebased = new Entry(successor.name, false, BinaryDelta.diff(materialize(position - 1), successorData));
+			}
+			this.chain.set(position + 1, rebased);
+			this.snapshots.put(successor.name, rebased);
+		}
+		if (position == last) {
+			this.lastData = (position > 0) ? materialize(position - 1) : null;
+		}
+		this.chain.remove(position);
+	}
+
+	public synchronized int getKeyframeCount() {
+		int keyframes = 0;
+		for (Entry entry : this.chain) {
+			if (entry.keyframe) {
+				keyframes++;
+			}
+		}
+		return keyframes;
+	}
+
+	public synchronized long getStoredBytes() {
+		long bytes = 0;
+		for (Entry entry : this.chain) {
+			bytes += entry.data.length;
+		}
+		return bytes;
+	}
+
+	private static final class Entry {
+
+		private final String name;
+
+		private final boolean keyframe;
+
+		private final byte[] data;
+
+		private Entry(String name, boolean keyframe, byte[] data) {
+			this.name = name;
+			this.keyframe = keyframe;
+			this.data = data;
+		}
+
+	}
+
+}
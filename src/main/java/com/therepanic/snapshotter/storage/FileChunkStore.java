@@ -0,0 +1,182 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FileChunkStore implements ChunkStore {
+
+	private static final String TEMP_MARKER = ".tmp-";
+
+	private final File directory;
+
+	private final Map<String, int[]> references = new HashMap<>();
+
+	private long storedBytes;
+
+	public FileChunkStore(File directory) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new UncheckedIOException(new IOException("Cannot create chunk directory " + directory));
+		}
+		this.directory = directory;
+		collectGarbage();
+	}
+
+	private void collectGarbage() {
+		// the recipes that reference chunks live in memory only, so chunks and temp files
+		// left by an earlier process can never be reached again
+		File[] prefixes = this.directory.listFiles(file -> file.isDirectory() && isHex(file.getName(), 2));
+		if (prefixes == null) {
+			return;
+		}
+		for (File prefix : prefixes) {
+			File[] chunks = prefix.listFiles(file -> isChunkFile(prefix.getName(), file.getName()));
+			if (chunks != null) {
+				for (File chunk : chunks) {
+					chunk.delete();
+				}
+			}
+			prefix.delete();
+		}
+	}
+
+	private static boolean isChunkFile(String prefix, String name) {
+		int marker = name.indexOf(TEMP_MARKER);
+		String hash = (marker >= 0) ? name.substring(0, marker) : name;
+		return hash.startsWith(prefix) && isHex(hash, hash.length());
+	}
+
+	private static boolean isHex(String name, int length) {
+		if (name.length() != length || length < 2) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (Character.digit(name.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private File chunkFile(String hash) {
+		return new File(new File(this.directory, hash.substring(0, 2)), hash);
+	}
+
+	@Override
+	public synchronized boolean retain(String hash, byte[] data) {
+		int[] count = this.references.get(hash);
+		if (count != null) {
+			count[0]++;
+			return false;
+		}
+		File file = chunkFile(hash);
+		// an unreferenced file may be torn or stale, so it is only reused when its content matches
+		if (!file.isFile() || !Arrays.equals(read(file), data)) {
+			write(file.toPath(), data);
+		}
+		this.references.put(hash, new int[] { 1 });
+		this.storedBytes += data.length;
+		return true;
+	}
+
+	private static void write(Path target, byte[] data) {
+		// written next to the chunk and moved over it, so a crash never leaves a torn chunk behind
+		Path temp = target.resolveSibling(target.getFileName() + TEMP_MARKER + Thread.currentThread().getId() + "-"
+				+ Long.toHexString(System.nanoTime()));
+		boolean moved = false;
+		try {
+			Files.createDirectories(target.getParent());
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			moved = true;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			if (!moved) {
+				temp.toFile().delete();
+			}
+		}
+	}
+
+	@Override
+	public synchronized byte[] get(String hash) {
+		if (!this.references.containsKey(hash)) {
+			return null;
+		}
+		return read(chunkFile(hash));
+	}
+
+	private static byte[] read(File file) {
+		try {
+			return Files.readAllBytes(file.toPath());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void release(String hash) {
+		int[] count = this.references.get(hash);
+		if (count != null && --count[0] == 0) {
+			this.references.remove(hash);
+			File file = chunkFile(hash);
+			this.storedBytes -= file.length();
+			file.delete();
+		}
+	}
+
+	@Override
+	public synchronized int getChunkCount() {
+		return this.references.size();
+	}
+
+	@Override
+	public synchronized long getStoredBytes() {
+		return this.storedBytes;
+	}
+
+}
@@ -21,11 +21,26 @@
 package com.therepanic.snapshotter.storage;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 import com.therepanic.snapshotter.AbstractFileSnapshotStorage;
+import com.therepanic.snapshotter.FileStorageOptions;
 import com.therepanic.snapshotter.Snapshot;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 
@@ -35,12 +50,25 @@ public class JsonFileSnapshotStorage<T> extends AbstractFileSnapshotStorage<T> {
 
 	private final Type typeOfT;
 
-	public JsonFileSnapshotStorage(Gson gson, Type typeOfT, LinkedHashMap<String, File> snapshots) {
-		super(snapshots);
+	public JsonFileSnapshotStorage(Gson gson, Type typeOfT, LinkedHashMap<String, File> snapshots,
+			FileStorageOptions options) {
+		super(snapshots, options);
 		this.gson = gson;
 		this.typeOfT = typeOfT;
 	}
 
+	public JsonFileSnapshotStorage(Gson gson, Type typeOfT, FileStorageOptions options) {
+		this(gson, typeOfT, new LinkedHashMap<>(), options);
+	}
+
+	public JsonFileSnapshotStorage(Type typeOfT, FileStorageOptions options) {
+		this(new Gson(), typeOfT, options);
+	}
+
+	public JsonFileSnapshotStorage(Gson gson, Type typeOfT, LinkedHashMap<String, File> snapshots) {
+		this(gson, typeOfT, snapshots, FileStorageOptions.defaults());
+	}
+
 	public JsonFileSnapshotStorage(Gson gson, Type typeOfT) {
 		this(gson, typeOfT, new LinkedHashMap<>());
 	}
@@ -55,14 +83,41 @@ public class JsonFileSnapshotStorage<T> extends AbstractFileSnapshotStorage<T> {
 
 	@Override
 	protected byte[] encode(Snapshot<T> snapshot) {
-		String encodedStr = this.gson.toJson(snapshot.getState());
+		String encodedStr = this.gson.toJson(snapshot.getState(), this.typeOfT);
 		return encodedStr.getBytes(StandardCharsets.UTF_8);
 	}
 
+	@Override
+	protected void encode(Snapshot<T> snapshot, OutputStream output) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		try (JsonWriter writer = this.gson.newJsonWriter(out)) {
+			this.gson.toJson(snapshot.getState(), this.typeOfT, writer);
+		}
+	}
+
+	@Override
+	protected Snapshot<T> decode(ByteBuffer buffer) {
+		Reader in = new InputStreamReader(new ByteBufferInputStream(buffer), StandardCharsets.UTF_8);
+		try (JsonReader reader = this.gson.newJsonReader(in)) {
+			T state = this.gson.fromJson(reader, this.typeOfT);
+			// the same full-consumption check Gson applies when it parses a String
+			if (reader.peek() != JsonToken.END_DOCUMENT) {
+				throw new JsonSyntaxException("JSON document was not fully consumed.");
+			}
+			return new Snapshot<>(state);
+		}
+		catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	@Override
 	protected Snapshot<T> decode(byte[] data) {
 		String str = new String(data, StandardCharsets.UTF_8);
-		T state = this.gson.fromJson(str, typeOfT);
+		T state = this.gson.fromJson(str, this.typeOfT);
 		return new Snapshot<>(state);
 	}
 
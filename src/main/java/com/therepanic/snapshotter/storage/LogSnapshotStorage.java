@@ -0,0 +1,683 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.DurabilityPolicy;
+import com.therepanic.snapshotter.EncodedSnapshot;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
+import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+public class LogSnapshotStorage<T> implements SnapshotStorage<T>, AutoCloseable {
+
+	public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 1 + 4;
+
+	private static final byte PUT = 1;
+
+	private static final byte REMOVE = 2;
+
+	private final File directory;
+
+	private final SnapshotSerializer<T> serializer;
+
+	private final Function<byte[], T> decoder;
+
+	private final long segmentSize;
+
+	private final double compactionRatio;
+
+	private final DurabilityPolicy durabilityPolicy;
+
+	private final ExecutorService compactor;
+
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+	private final LinkedHashMap<String, Location> index = new LinkedHashMap<>();
+
+	private Segment active;
+
+	private long sequence;
+
+	private boolean compactionScheduled;
+
+	private long generation;
+
+	private final Object compactionLock = new Object();
+
+	public LogSnapshotStorage(File directory, SnapshotSerializer<T> serializer, long segmentSize,
+			double compactionRatio, DurabilityPolicy durabilityPolicy) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new UncheckedIOException(new IOException("Cannot create log directory " + directory));
+		}
+		this.directory = directory;
+		this.serializer = serializer;
+		this.decoder = serializer::deserialize;
+		this.segmentSize = segmentSize;
+		this.compactionRatio = compactionRatio;
+		this.durabilityPolicy = durabilityPolicy;
+		this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "log-snapshot-compactor-" + directory.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		recover();
+	}
+
+	public LogSnapshotStorage(File directory, SnapshotSerializer<T> serializer, long segmentSize,
+			double compactionRatio) {
+		this(directory, serializer, segmentSize, compactionRatio, DurabilityPolicy.none());
+	}
+
+	public LogSnapshotStorage(File directory, SnapshotSerializer<T> serializer, DurabilityPolicy durabilityPolicy) {
+		this(directory, serializer, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_RATIO, durabilityPolicy);
+	}
+
+	public LogSnapshotStorage(File directory, SnapshotSerializer<T> serializer) {
+		this(directory, serializer, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_RATIO);
+	}
+
+	private void recover() {
+		File[] files = this.directory.listFiles((dir, name) -> name.startsWith("segment-") && name.endsWith(".log"));
+		List<Location> locations = new ArrayList<>();
+		Map<String, Location> latest = new HashMap<>();
+		if (files != null) {
+			for (File file : files) {
+				String fileName = file.getName();
+				int id;
+				try {
+					id = Integer.parseInt(fileName.substring(8, fileName.length() - 4));
+				}
+				catch (NumberFormatException e) {
+					// not one of ours, such as a copy left behind by hand
+					continue;
+				}
+				Segment segment = openSegment(id);
+				this.segments.put(segment.id, segment);
+			}
+		}
+		for (Segment segment : this.segments.values()) {
+			long end = scan(segment, (type, name, location) -> {
+				this.sequence = Math.max(this.sequence, location.sequence);
+				segment.totalBytes += location.length;
+				segment.minSequence = Math.min(segment.minSequence, location.sequence);
+				Location current = latest.get(name);
+				if (current == null || current.sequence < location.sequence) {
+					latest.put(name, (type == PUT) ? location : Location.removed(location.sequence));
+				}
+			});
+			// a record torn by a crash is cut off so appends continue from a clean tail
+			truncate(segment, end);
+		}
+		for (Location location : latest.values()) {
+			if (location.segment != null) {
+				locations.add(location);
+				location.segment.liveBytes += location.length;
+			}
+		}
+		locations.sort(Comparator.comparingLong(location -> location.sequence));
+		for (Location location : locations) {
+			this.index.put(location.name, location);
+		}
+		this.active = this.segments.isEmpty() ? roll() : this.segments.lastEntry().getValue();
+	}
+
+	private long scan(Segment segment, RecordVisitor visitor) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		long position = 0;
+		try {
+			long size = segment.channel.size();
+			while (position + HEADER_SIZE <= size) {
+				header.clear();
+				readFully(segment.channel, header, position);
+				header.flip();
+				int length = header.getInt();
+				int checksum = header.getInt();
+				long recordSequence = header.getLong();
+				byte type = header.get();
+				int nameLength = header.getInt();
+				if (length < HEADER_SIZE || nameLength < 0 || nameLength > length || position + length > size) {
+					break;
+				}
+				ByteBuffer body = ByteBuffer.allocate(length - 8);
+				readFully(segment.channel, body, position + 8);
+				crc.reset();
+				crc.update(body.array(), 0, body.limit());
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				String name = new String(body.array(), 13, nameLength, StandardCharsets.UTF_8);
+				long payloadOffset = position + HEADER_SIZE + nameLength;
+				Location location = new Location(name, segment, position, length, payloadOffset,
+						length - HEADER_SIZE - nameLength, recordSequence);
+				visitor.visit(type, name, location);
+				position += length;
+			}
+			return position;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void truncate(Segment segment, long length) {
+		try {
+			if (segment.channel.size() > length) {
+				segment.channel.truncate(length);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Segment openSegment(int id) {
+		File file = new File(this.directory, String.format("segment-%08d.log", id));
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			return new Segment(id, file, channel);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Segment roll() {
+		int id = this.segments.isEmpty() ? 1 : this.segments.lastKey() + 1;
+		Segment segment = openSegment(id);
+		this.segments.put(id, segment);
+		try {
+			// makes the new segment's directory entry as durable as the records appended to it
+			this.durabilityPolicy.afterPublish(segment.file.toPath());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return segment;
+	}
+
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		return new EncodedSnapshot<>(this.serializer.serialize(target), this.decoder);
+	}
+
+	@Override
+	public void save(String name, Snapshot<T> snapshot) {
+		byte[] data = encode(snapshot);
+		Segment segment;
+		synchronized (this) {
+			Location location = append(PUT, name, data, ++this.sequence);
+			release(this.index.remove(name));
+			this.index.put(name, location);
+			location.segment.liveBytes += location.length;
+			scheduleCompactionIfNeeded();
+			segment = location.segment;
+		}
+		sync(segment);
+	}
+
+	private void sync(Segment segment) {
+		// runs outside the storage lock so concurrent appends can share one sync of the segment
+		try {
+			this.durabilityPolicy.afterWrite(segment.channel);
+		}
+		catch (ClosedChannelException e) {
+			// the segment was compacted away, compaction forces the records it moved
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private byte[] encode(Snapshot<T> snapshot) {
+		if (snapshot instanceof EncodedSnapshot && ((EncodedSnapshot<T>) snapshot).getDecoder() == this.decoder) {
+			return ((EncodedSnapshot<T>) snapshot).getData();
+		}
+		return this.serializer.serialize(snapshot.getState());
+	}
+
+	private Location append(byte type, String name, byte[] payload, long recordSequence) {
+		int length = recordLength(name, payload);
+		try {
+			if (this.active.channel.size() > 0 && this.active.channel.size() + length > this.segmentSize) {
+				this.active = roll();
+			}
+			Location location = write(this.active, type, name, payload, recordSequence);
+			this.active.totalBytes += length;
+			this.active.minSequence = Math.min(this.active.minSequence, recordSequence);
+			return location;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static int recordLength(String name, byte[] payload) {
+		return HEADER_SIZE + name.getBytes(StandardCharsets.UTF_8).length + payload.length;
+	}
+
+	private static Location write(Segment segment, byte type, String name, byte[] payload, long recordSequence)
+			throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		int length = HEADER_SIZE + nameBytes.length + payload.length;
+		ByteBuffer record = ByteBuffer.allocate(length);
+		record.putInt(length).putInt(0).putLong(recordSequence).put(type).putInt(nameBytes.length);
+		record.put(nameBytes).put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, length - 8);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+		long position = segment.channel.size();
+		while (record.hasRemaining()) {
+			segment.channel.write(record, position + record.position());
+		}
+		return new Location(name, segment, position, length, position + HEADER_SIZE + nameBytes.length,
+				payload.length, recordSequence);
+	}
+
+	private void release(Location location) {
+		if (location != null) {
+			location.segment.liveBytes -= location.length;
+		}
+	}
+
+	@Override
+	public Snapshot<T> load(String name) {
+		byte[] data;
+		synchronized (this) {
+			Location location = this.index.get(name);
+			if (location == null) {
+				return null;
+			}
+			data = read(location);
+		}
+		return new Snapshot<>(this.serializer.deserialize(data));
+	}
+
+	private static byte[] read(Location location) {
+		ByteBuffer buffer = ByteBuffer.allocate(location.payloadLength);
+		try {
+			readFully(location.segment.channel, buffer, location.payloadOffset);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return buffer.array();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of segment");
+			}
+		}
+	}
+
+	@Override
+	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
+		String lastName;
+		synchronized (this) {
+			lastName = this.index.keySet().stream().reduce((first, second) -> second).orElse(null);
+		}
+		if (lastName == null) {
+			return null;
+		}
+		return new AbstractMap.SimpleEntry<>(lastName, load(lastName));
+	}
+
+	@Override
+	public synchronized boolean hasSnapshot(String name) {
+		return this.index.containsKey(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (Segment segment : this.segments.values()) {
+			segment.delete();
+		}
+		this.segments.clear();
+		this.index.clear();
+		this.generation++;
+		this.active = roll();
+	}
+
+	@Override
+	public void remove(String name) {
+		Segment segment;
+		synchronized (this) {
+			Location location = this.index.remove(name);
+			if (location == null) {
+				return;
+			}
+			release(location);
+			// the tombstone keeps older records of the name from being replayed
+			segment = append(REMOVE, name, new byte[0], ++this.sequence).segment;
+			scheduleCompactionIfNeeded();
+		}
+		sync(segment);
+	}
+
+	private void scheduleCompactionIfNeeded() {
+		if (!this.compactionScheduled && !findCompactionCandidates().isEmpty()) {
+			this.compactionScheduled = true;
+			this.compactor.execute(this::compact);
+		}
+	}
+
+	private List<Segment> findCompactionCandidates() {
+		List<Segment> candidates = new ArrayList<>();
+		for (Segment segment : this.segments.values()) {
+			if (segment != this.active && segment.liveBytes < segment.totalBytes * this.compactionRatio) {
+				candidates.add(segment);
+			}
+		}
+		return candidates;
+	}
+
+	public void compact() {
+		synchronized (this.compactionLock) {
+			compactCandidates();
+		}
+	}
+
+	private void compactCandidates() {
+		List<Segment> candidates;
+		Map<Segment, Map<Long, Location>> live = new IdentityHashMap<>();
+		long survivorMinSequence = Long.MAX_VALUE;
+		long startGeneration;
+		synchronized (this) {
+			this.compactionScheduled = false;
+			candidates = findCompactionCandidates();
+			if (candidates.isEmpty()) {
+				return;
+			}
+			for (Segment segment : candidates) {
+				live.put(segment, new HashMap<>());
+			}
+			for (Location location : this.index.values()) {
+				Map<Long, Location> segmentLive = live.get(location.segment);
+				if (segmentLive != null) {
+					segmentLive.put(location.offset, location);
+				}
+			}
+			for (Segment segment : this.segments.values()) {
+				if (!live.containsKey(segment)) {
+					survivorMinSequence = Math.min(survivorMinSequence, segment.minSequence);
+				}
+			}
+			startGeneration = this.generation;
+		}
+		// candidates are sealed, so their live records are copied without blocking saves and loads
+		CompactionOutput output = new CompactionOutput();
+		List<Location[]> moves = new ArrayList<>();
+		long oldestSurvivor = survivorMinSequence;
+		try {
+			for (Segment segment : candidates) {
+				Map<Long, Location> segmentLive = live.get(segment);
+				scan(segment, (type, name, location) -> {
+					Location original = segmentLive.get(location.offset);
+					if (type == PUT && original != null) {
+						moves.add(new Location[] { original, output.write(PUT, name, read(location), location.sequence) });
+					}
+					else if (type == REMOVE && location.sequence > oldestSurvivor) {
+						// the tombstone still hides an older record of the name in a surviving segment
+						output.write(REMOVE, name, new byte[0], location.sequence);
+					}
+				});
+			}
+			// moved records must be durable before the segments holding the originals disappear
+			output.force();
+		}
+		catch (RuntimeException e) {
+			synchronized (this) {
+				if (this.generation == startGeneration) {
+					output.discard();
+					throw e;
+				}
+			}
+			// cleared while copying, which already deleted the candidates and the output
+			return;
+		}
+		synchronized (this) {
+			if (this.generation != startGeneration) {
+				return;
+			}
+			for (Location[] move : moves) {
+				// names saved or removed while copying keep their newer location
+				if (this.index.get(move[0].name) == move[0]) {
+					this.index.put(move[0].name, move[1]);
+					move[1].segment.liveBytes += move[1].length;
+				}
+			}
+			output.publish();
+			for (Segment segment : candidates) {
+				this.segments.remove(segment.id);
+				segment.delete();
+			}
+		}
+	}
+
+	public synchronized int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	public synchronized long getLiveBytes() {
+		long bytes = 0;
+		for (Segment segment : this.segments.values()) {
+			bytes += segment.liveBytes;
+		}
+		return bytes;
+	}
+
+	public synchronized long getTotalBytes() {
+		long bytes = 0;
+		for (Segment segment : this.segments.values()) {
+			bytes += segment.totalBytes;
+		}
+		return bytes;
+	}
+
+	@Override
+	public void close() {
+		this.compactor.shutdown();
+		try {
+			if (!this.compactor.awaitTermination(5, TimeUnit.SECONDS)) {
+				this.compactor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			for (Segment segment : this.segments.values()) {
+				segment.close();
+			}
+		}
+	}
+
+	private final class CompactionOutput {
+
+		private final List<Segment> segments = new ArrayList<>();
+
+		private final Map<Segment, long[]> stats = new IdentityHashMap<>();
+
+		private Segment current;
+
+		private Location write(byte type, String name, byte[] payload, long recordSequence) {
+			int length = recordLength(name, payload);
+			try {
+				if (this.current == null
+						|| (this.current.channel.size() > 0 && this.current.channel.size() + length > segmentSize)) {
+					synchronized (LogSnapshotStorage.this) {
+						this.current = roll();
+					}
+					this.segments.add(this.current);
+					this.stats.put(this.current, new long[] { 0, Long.MAX_VALUE });
+				}
+				Location location = LogSnapshotStorage.write(this.current, type, name, payload, recordSequence);
+				long[] segmentStats = this.stats.get(this.current);
+				segmentStats[0] += length;
+				segmentStats[1] = Math.min(segmentStats[1], recordSequence);
+				return location;
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void force() {
+			try {
+				for (Segment segment : this.segments) {
+					segment.channel.force(true);
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// callers hold the storage lock for publish and discard
+		private void publish() {
+			for (Segment segment : this.segments) {
+				long[] segmentStats = this.stats.get(segment);
+				segment.totalBytes += segmentStats[0];
+				segment.minSequence = Math.min(segment.minSequence, segmentStats[1]);
+			}
+		}
+
+		private void discard() {
+			for (Segment segment : this.segments) {
+				LogSnapshotStorage.this.segments.remove(segment.id);
+				segment.delete();
+			}
+		}
+
+	}
+
+	@FunctionalInterface
+	private interface RecordVisitor {
+
+		void visit(byte type, String name, Location location);
+
+	}
+
+	private static final class Segment {
+
+		private final int id;
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		private long liveBytes;
+
+		private long totalBytes;
+
+		private long minSequence = Long.MAX_VALUE;
+
+		private Segment(int id, File file, FileChannel channel) {
+			this.id = id;
+			this.file = file;
+			this.channel = channel;
+		}
+
+		private void close() {
+			try {
+				this.channel.close();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void delete() {
+			close();
+			this.file.delete();
+		}
+
+	}
+
+	private static final class Location {
+
+		private final String name;
+
+		private final Segment segment;
+
+		private final long offset;
+
+		private final int length;
+
+		private final long payloadOffset;
+
+		private final int payloadLength;
+
+		private final long sequence;
+
+		private Location(String name, Segment segment, long offset, int length, long payloadOffset, int payloadLength,
+				long sequence) {
+			this.name = name;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.payloadOffset = payloadOffset;
+			this.payloadLength = payloadLength;
+			this.sequence = sequence;
+		}
+
+		private static Location removed(long sequence) {
+			return new Location(null, null, -1, 0, -1, 0, sequence);
+		}
+
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MemoryChunkStore implements ChunkStore {
+
+	private final Map<String, Chunk> chunks = new HashMap<>();
+
+	private long storedBytes;
+
+	@Override
+	public synchronized boolean retain(String hash, byte[] data) {
+		Chunk chunk = this.chunks.get(hash);
+		if (chunk == null) {
+			this.chunks.put(hash, new Chunk(data));
+			this.storedBytes += data.length;
+			return true;
+		}
+		chunk.references++;
+		return false;
+	}
+
+	@Override
+	public synchronized byte[] get(String hash) {
+		Chunk chunk = this.chunks.get(hash);
+		return (chunk != null) ? chunk.data : null;
+	}
+
+	@Override
+	public synchronized void release(String hash) {
+		Chunk chunk = this.chunks.get(hash);
+		if (chunk != null && --chunk.references == 0) {
+			this.chunks.remove(hash);
+			this.storedBytes -= chunk.data.length;
+		}
+	}
+
+	@Override
+	public synchronized int getChunkCount() {
+		return this.chunks.size();
+	}
+
+	@Override
+	public synchronized long getStoredBytes() {
+		return this.storedBytes;
+	}
+
+	private static final class Chunk {
+
+		private final byte[] data;
+
+		private int references = 1;
+
+		private Chunk(byte[] data) {
+			this.data = data;
+		}
+
+	}
+
+}
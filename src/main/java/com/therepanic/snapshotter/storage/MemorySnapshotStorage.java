@@ -20,29 +20,72 @@
 
 package com.therepanic.snapshotter.storage;
 
+import com.therepanic.snapshotter.EncodedSnapshot;
 import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
 import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 public class MemorySnapshotStorage<T> implements SnapshotStorage<T> {
 
 	private final LinkedHashMap<String, Snapshot<T>> snapshots;
 
-	public MemorySnapshotStorage(LinkedHashMap<String, Snapshot<T>> snapshots) {
+	private final SnapshotSerializer<T> serializer;
+
+	private final Function<byte[], T> decoder;
+
+	private final boolean cacheStates;
+
+	public MemorySnapshotStorage(LinkedHashMap<String, Snapshot<T>> snapshots, SnapshotSerializer<T> serializer,
+			boolean cacheStates) {
 		this.snapshots = snapshots;
+		this.serializer = serializer;
+		this.decoder = serializer != null ? serializer::deserialize : null;
+		this.cacheStates = cacheStates;
+	}
+
+	public MemorySnapshotStorage(SnapshotSerializer<T> serializer, boolean cacheStates) {
+		this(new LinkedHashMap<>(), serializer, cacheStates);
+	}
+
+	public MemorySnapshotStorage(SnapshotSerializer<T> serializer) {
+		this(serializer, false);
+	}
+
+	public MemorySnapshotStorage(LinkedHashMap<String, Snapshot<T>> snapshots) {
+		this(snapshots, null, false);
 	}
 
 	public MemorySnapshotStorage() {
 		this(new LinkedHashMap<>());
 	}
 
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		// a strategy that does more than a plain copy still runs, save then serializes its result
+		if (this.serializer == null || (strategy != null && !strategy.copiesFully())) {
+			return SnapshotStorage.super.capture(target, strategy);
+		}
+		return new EncodedSnapshot<>(this.serializer.serialize(target), this.decoder, this.cacheStates);
+	}
+
 	@Override
 	public void save(String name, Snapshot<T> snapshot) {
+		if (this.serializer != null && !isOwnEncoding(snapshot)) {
+			snapshot = new EncodedSnapshot<>(this.serializer.serialize(snapshot.getState()), this.decoder,
+					this.cacheStates);
+		}
 		this.snapshots.put(name, snapshot);
 	}
 
+	private boolean isOwnEncoding(Snapshot<T> snapshot) {
+		return snapshot instanceof EncodedSnapshot && ((EncodedSnapshot<T>) snapshot).getDecoder() == this.decoder;
+	}
+
 	@Override
 	public Snapshot<T> load(String name) {
 		return this.snapshots.get(name);
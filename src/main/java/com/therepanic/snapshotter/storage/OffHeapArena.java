@@ -0,0 +1,233 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.DirectBuffers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class OffHeapArena implements AutoCloseable {
+
+	private final int slabSize;
+
+	private final ByteBuffer[] slabs;
+
+	private final List<TreeMap<Integer, Integer>> freeBlocks;
+
+	private final Set<Block> dedicatedBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private long usedBytes;
+
+	private long reservedBytes;
+
+	private boolean closed;
+
+	public OffHeapArena(int slabSize, int slabCount) {
+		if (slabSize <= 0 || slabCount <= 0) {
+			throw new IllegalArgumentException("Slab size and slab count must be positive");
+		}
+		this.slabSize = slabSize;
+		this.slabs = new ByteBuffer[slabCount];
+		this.freeBlocks = new ArrayList<>(Collections.nCopies(slabCount, null));
+	}
+
+	public synchronized Block allocate(int length) {
+		ensureOpen();
+		if (length > this.slabSize) {
+			return allocateDedicated(length);
+		}
+		int size = Math.max(length, 1);
+		for (int slab = 0; slab < this.slabs.length; slab++) {
+			if (this.slabs[slab] == null) {
+				if (this.reservedBytes + this.slabSize > getCapacity()) {
+					continue;
+				}
+				this.slabs[slab] = ByteBuffer.allocateDirect(this.slabSize);
+				this.reservedBytes += this.slabSize;
+				TreeMap<Integer, Integer> free = new TreeMap<>();
+				free.put(0, this.slabSize);
+				this.freeBlocks.set(slab, free);
+			}
+			TreeMap<Integer, Integer> slabFree = this.freeBlocks.get(slab);
+			for (Map.Entry<Integer, Integer> free : slabFree.entrySet()) {
+				if (free.getValue() >= size) {
+					int offset = free.getKey();
+					slabFree.remove(offset);
+					if (free.getValue() > size) {
+						slabFree.put(offset + size, free.getValue() - size);
+					}
+					this.usedBytes += size;
+					return new Block(slab, offset, length, size, null);
+				}
+			}
+		}
+		throw new IllegalStateException("Off-heap arena is full; cannot allocate " + length + " bytes");
+	}
+
+	private Block allocateDedicated(int length) {
+		// a block larger than a slab gets its own buffer, it still counts against the capacity
+		if (this.reservedBytes + length > getCapacity()) {
+			throw new IllegalStateException("Off-heap arena is full; cannot allocate " + length + " bytes");
+		}
+		Block block = new Block(-1, 0, length, length, ByteBuffer.allocateDirect(length));
+		this.dedicatedBlocks.add(block);
+		this.reservedBytes += length;
+		this.usedBytes += length;
+		return block;
+	}
+
+	public synchronized void free(Block block) {
+		ensureOpen();
+		if (block.dedicated != null) {
+			if (this.dedicatedBlocks.remove(block)) {
+				DirectBuffers.release(block.dedicated);
+				this.reservedBytes -= block.size;
+				this.usedBytes -= block.size;
+			}
+			return;
+		}
+		TreeMap<Integer, Integer> free = this.freeBlocks.get(block.slab);
+		int offset = block.offset;
+		int size = block.size;
+		Map.Entry<Integer, Integer> previous = free.floorEntry(offset);
+		if (previous != null && previous.getKey() + previous.getValue() == offset) {
+			offset = previous.getKey();
+			size += previous.getValue();
+			free.remove(offset);
+		}
+		Integer next = free.get(offset + size);
+		if (next != null) {
+			free.remove(offset + size);
+			size += next;
+		}
+		free.put(offset, size);
+		this.usedBytes -= block.size;
+	}
+
+	public synchronized void write(Block block, byte[] data) {
+		ByteBuffer buffer = buffer(block);
+		buffer.position(block.offset);
+		buffer.put(data, 0, block.length);
+	}
+
+	public synchronized byte[] read(Block block) {
+		byte[] data = new byte[block.length];
+		ByteBuffer buffer = buffer(block);
+		buffer.position(block.offset);
+		buffer.get(data);
+		return data;
+	}
+
+	private ByteBuffer buffer(Block block) {
+		// released memory must never be touched, so every access checks the arena is still open
+		ensureOpen();
+		return (block.dedicated != null) ? block.dedicated.duplicate() : this.slabs[block.slab].duplicate();
+	}
+
+	private void ensureOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("Off-heap arena is closed");
+		}
+	}
+
+	public long getCapacity() {
+		return (long) this.slabSize * this.slabs.length;
+	}
+
+	public synchronized long getUsedBytes() {
+		return this.usedBytes;
+	}
+
+	public synchronized double getFragmentation() {
+		// blocks never span slabs, so only free space split inside a slab counts as fragmented
+		long totalFree = 0;
+		long contiguousFree = 0;
+		for (int slab = 0; slab < this.slabs.length; slab++) {
+			TreeMap<Integer, Integer> free = this.freeBlocks.get(slab);
+			if (free == null) {
+				totalFree += this.slabSize;
+				contiguousFree += this.slabSize;
+				continue;
+			}
+			int largest = 0;
+			for (int size : free.values()) {
+				totalFree += size;
+				largest = Math.max(largest, size);
+			}
+			contiguousFree += largest;
+		}
+		return totalFree == 0 ? 0.0 : 1.0 - (double) contiguousFree / totalFree;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		for (int slab = 0; slab < this.slabs.length; slab++) {
+			if (this.slabs[slab] != null) {
+				DirectBuffers.release(this.slabs[slab]);
+				this.slabs[slab] = null;
+				this.freeBlocks.set(slab, null);
+			}
+		}
+		for (Block block : this.dedicatedBlocks) {
+			DirectBuffers.release(block.dedicated);
+		}
+		this.dedicatedBlocks.clear();
+		this.usedBytes = 0;
+		this.reservedBytes = 0;
+	}
+
+	public static final class Block {
+
+		private final int slab;
+
+		private final int offset;
+
+		private final int length;
+
+		private final int size;
+
+		private final ByteBuffer dedicated;
+
+		private Block(int slab, int offset, int length, int size, ByteBuffer dedicated) {
+			this.slab = slab;
+			this.offset = offset;
+			this.length = length;
+			this.size = size;
+			this.dedicated = dedicated;
+		}
+
+		public int getLength() {
+			return this.length;
+		}
+
+	}
+
+}
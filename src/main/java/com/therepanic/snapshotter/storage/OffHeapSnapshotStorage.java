@@ -0,0 +1,158 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.EncodedSnapshot;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
+import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+public class OffHeapSnapshotStorage<T> implements SnapshotStorage<T>, AutoCloseable {
+
+	public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+	private final LinkedHashMap<String, OffHeapArena.Block> snapshots;
+
+	private final OffHeapArena arena;
+
+	private final SnapshotSerializer<T> serializer;
+
+	private final Function<byte[], T> decoder;
+
+	public OffHeapSnapshotStorage(LinkedHashMap<String, OffHeapArena.Block> snapshots, OffHeapArena arena,
+			SnapshotSerializer<T> serializer) {
+		this.snapshots = snapshots;
+		this.arena = arena;
+		this.serializer = serializer;
+		this.decoder = serializer::deserialize;
+	}
+
+	public OffHeapSnapshotStorage(SnapshotSerializer<T> serializer, int slabSize, int slabCount) {
+		this(new LinkedHashMap<>(), new OffHeapArena(slabSize, slabCount), serializer);
+	}
+
+	public OffHeapSnapshotStorage(SnapshotSerializer<T> serializer, long capacity) {
+		this(serializer, (int) Math.min(DEFAULT_SLAB_SIZE, capacity),
+				(int) ((capacity + DEFAULT_SLAB_SIZE - 1) / DEFAULT_SLAB_SIZE));
+	}
+
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		// the capture holds its serialized bytes on the heap, they only move off heap once saved
+		return new EncodedSnapshot<>(this.serializer.serialize(target), this.decoder);
+	}
+
+	@Override
+	public void save(String name, Snapshot<T> snapshot) {
+		byte[] data = encode(snapshot);
+		synchronized (this) {
+			// the replaced block is only released once the new one is written and indexed,
+			// so a full arena keeps the last good snapshot
+			OffHeapArena.Block block = this.arena.allocate(data.length);
+			this.arena.write(block, data);
+			OffHeapArena.Block previous = this.snapshots.put(name, block);
+			if (previous != null) {
+				this.arena.free(previous);
+			}
+		}
+	}
+
+	private byte[] encode(Snapshot<T> snapshot) {
+		if (snapshot instanceof EncodedSnapshot && ((EncodedSnapshot<T>) snapshot).getDecoder() == this.decoder) {
+			return ((EncodedSnapshot<T>) snapshot).getData();
+		}
+		return this.serializer.serialize(snapshot.getState());
+	}
+
+	@Override
+	public Snapshot<T> load(String name) {
+		byte[] data;
+		synchronized (this) {
+			OffHeapArena.Block block = this.snapshots.get(name);
+			if (block == null) {
+				return null;
+			}
+			data = this.arena.read(block);
+		}
+		return new Snapshot<>(this.serializer.deserialize(data));
+	}
+
+	@Override
+	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
+		String lastName;
+		synchronized (this) {
+			lastName = this.snapshots.keySet().stream().reduce((first, second) -> second).orElse(null);
+		}
+		if (lastName == null) {
+			return null;
+		}
+		return new AbstractMap.SimpleEntry<>(lastName, load(lastName));
+	}
+
+	@Override
+	public synchronized boolean hasSnapshot(String name) {
+		return this.snapshots.containsKey(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (OffHeapArena.Block block : this.snapshots.values()) {
+			this.arena.free(block);
+		}
+		this.snapshots.clear();
+	}
+
+	@Override
+	public synchronized void remove(String name) {
+		OffHeapArena.Block block = this.snapshots.remove(name);
+		if (block != null) {
+			this.arena.free(block);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		this.snapshots.clear();
+		this.arena.close();
+	}
+
+	public long getCapacity() {
+		return this.arena.getCapacity();
+	}
+
+	public long getUsedBytes() {
+		return this.arena.getUsedBytes();
+	}
+
+	public double getFragmentation() {
+		return this.arena.getFragmentation();
+	}
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotSerializer;
+import com.therepanic.snapshotter.SnapshotStorage;
+import com.therepanic.snapshotter.SnapshotStrategy;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+public class PartitionedSnapshotStorage<T> implements SnapshotStorage<T> {
+
+	public static final int DEFAULT_PARTITION_SIZE = 65536;
+
+	private final LinkedHashMap<String, Layout> snapshots = new LinkedHashMap<>();
+
+	private final SnapshotSerializer<Object> serializer;
+
+	private final ChunkStore chunkStore;
+
+	private final ForkJoinPool pool;
+
+	private final int partitionSize;
+
+	private final LongAdder writtenPartitions = new LongAdder();
+
+	private final LongAdder reusedPartitions = new LongAdder();
+
+	public PartitionedSnapshotStorage(SnapshotSerializer<Object> serializer, ChunkStore chunkStore, ForkJoinPool pool,
+			int partitionSize) {
+		if (partitionSize < 1) {
+			throw new IllegalArgumentException("Partition size must be positive: " + partitionSize);
+		}
+		this.serializer = serializer;
+		this.chunkStore = chunkStore;
+		this.pool = pool;
+		this.partitionSize = partitionSize;
+	}
+
+	public PartitionedSnapshotStorage(SnapshotSerializer<Object> serializer, ChunkStore chunkStore,
+			int partitionSize) {
+		this(serializer, chunkStore, ForkJoinPool.commonPool(), partitionSize);
+	}
+
+	public PartitionedSnapshotStorage(ChunkStore chunkStore) {
+		this(new KryoSnapshotSerializer<>(), chunkStore, DEFAULT_PARTITION_SIZE);
+	}
+
+	public PartitionedSnapshotStorage() {
+		this(new MemoryChunkStore());
+	}
+
+	@Override
+	public Snapshot<T> capture(T target, SnapshotStrategy<T> strategy) {
+		if (strategy != null && !strategy.copiesFully()) {
+			return new Snapshot<>(target, strategy);
+		}
+		return encode(target);
+	}
+
+	private PartitionedSnapshot<T> encode(T target) {
+		List<Object> partitions = split(target, this.partitionSize);
+		byte[][] data = new byte[partitions.size()][];
+		String[] hashes = new String[partitions.size()];
+		this.pool.submit(() -> IntStream.range(0, data.length).parallel().forEach(i -> {
+			data[i] = this.serializer.serialize(partitions.get(i));
+			hashes[i] = ChunkHashes.sha256(data[i]);
+		})).join();
+		return new PartitionedSnapshot<>(this, new Layout(target.getClass(), isAccessOrdered(target), hashes), data);
+	}
+
+	@Override
+	public void save(String name, Snapshot<T> snapshot) {
+		PartitionedSnapshot<T> partitioned;
+		if (snapshot instanceof PartitionedSnapshot && ((PartitionedSnapshot<T>) snapshot).owner == this) {
+			partitioned = (PartitionedSnapshot<T>) snapshot;
+		}
+		else {
+			partitioned = encode(snapshot.getState());
+		}
+		String[] hashes = partitioned.layout.hashes;
+		synchronized (this) {
+			// unchanged partitions hash the same and are only retained, never rewritten
+			for (int i = 0; i < hashes.length; i++) {
+				if (this.chunkStore.retain(hashes[i], partitioned.data[i])) {
+					this.writtenPartitions.increment();
+				}
+				else {
+					this.reusedPartitions.increment();
+				}
+			}
+			Layout previous = this.snapshots.put(name, partitioned.layout);
+			if (previous != null) {
+				release(previous);
+			}
+		}
+	}
+
+	private void release(Layout layout) {
+		for (String hash : layout.hashes) {
+			this.chunkStore.release(hash);
+		}
+	}
+
+	@Override
+	public Snapshot<T> load(String name) {
+		Layout layout;
+		byte[][] data;
+		synchronized (this) {
+			layout = this.snapshots.get(name);
+			if (layout == null) {
+				return null;
+			}
+			data = new byte[layout.hashes.length][];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = this.chunkStore.get(layout.hashes[i]);
+				if (data[i] == null) {
+					throw new IllegalStateException("Missing partition " + layout.hashes[i]);
+				}
+			}
+		}
+		return new Snapshot<>(decode(layout, data));
+	}
+
+	@SuppressWarnings("unchecked")
+	private T decode(Layout layout, byte[][] data) {
+		Object[] partitions = new Object[data.length];
+		this.pool.submit(() -> IntStream.range(0, data.length)
+			.parallel()
+			.forEach(i -> partitions[i] = this.serializer.deserialize(data[i]))).join();
+		return (T) merge(layout, Arrays.asList(partitions));
+	}
+
+	@Override
+	public Map.Entry<String, Snapshot<T>> loadLastEntry() {
+		String lastName;
+		synchronized (this) {
+			lastName = this.snapshots.keySet().stream().reduce((first, second) -> second).orElse(null);
+		}
+		if (lastName == null) {
+			return null;
+		}
+		return new AbstractMap.SimpleEntry<>(lastName, load(lastName));
+	}
+
+	@Override
+	public synchronized boolean hasSnapshot(String name) {
+		return this.snapshots.containsKey(name);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (Layout layout : this.snapshots.values()) {
+			release(layout);
+		}
+		this.snapshots.clear();
+	}
+
+	@Override
+	public synchronized void remove(String name) {
+		Layout layout = this.snapshots.remove(name);
+		if (layout != null) {
+			release(layout);
+		}
+	}
+
+	public ChunkStore getChunkStore() {
+		return this.chunkStore;
+	}
+
+	public long getWrittenPartitionCount() {
+		return this.writtenPartitions.sum();
+	}
+
+	public long getReusedPartitionCount() {
+		return this.reusedPartitions.sum();
+	}
+
+	// each partition is serialized on its own, so an object reachable from two partitions is loaded as two
+	// copies; only containers whose elements do not reference each other across partitions round-trip exactly.
+	// lists and ordered maps are cut into ranges, so an insert shifts every later partition and rewrites them,
+	// hashed maps keep untouched partitions stable
+	private static List<Object> split(Object target, int partitionSize) {
+		if (target instanceof List || target instanceof Map) {
+			checkRebuildable(target);
+		}
+		if (target instanceof List) {
+			List<Object> elements = Arrays.asList(((List<?>) target).toArray());
+			List<Object> partitions = new ArrayList<>();
+			for (int from = 0; from < elements.size(); from += partitionSize) {
+				int to = Math.min(elements.size(), from + partitionSize);
+				partitions.add(new ArrayList<>(elements.subList(from, to)));
+			}
+			return partitions;
+		}
+		if (target instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) target;
+			return (map instanceof SortedMap || map instanceof LinkedHashMap) ? splitOrdered(map, partitionSize)
+					: splitHashed(map, partitionSize);
+		}
+		return Collections.singletonList(target);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> splitOrdered(Map<?, ?> map, int partitionSize) {
+		List<Object> partitions = new ArrayList<>();
+		Map<Object, Object> current = null;
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (current == null || current.size() == partitionSize) {
+				current = (map instanceof SortedMap) ? new TreeMap<>(((SortedMap<Object, ?>) map).comparator())
+						: new LinkedHashMap<>();
+				partitions.add(current);
+			}
+			current.put(entry.getKey(), entry.getValue());
+		}
+		if (partitions.isEmpty() && map instanceof SortedMap) {
+			// an empty sorted map still needs a partition to carry its comparator
+			partitions.add(new TreeMap<>(((SortedMap<Object, ?>) map).comparator()));
+		}
+		return partitions;
+	}
+
+	private static List<Object> splitHashed(Map<?, ?> map, int partitionSize) {
+		// partitions by key hash, so an update only changes the partition holding the key
+		int wanted = (map.size() + partitionSize - 1) / partitionSize;
+		int count = (wanted <= 1) ? 1 : Integer.highestOneBit(wanted - 1) << 1;
+		List<Map<Object, Object>> partitions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			partitions.add(new HashMap<>());
+		}
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			int hash = (entry.getKey() != null) ? entry.getKey().hashCode() : 0;
+			partitions.get((hash ^ (hash >>> 16)) & (count - 1)).put(entry.getKey(), entry.getValue());
+		}
+		return new ArrayList<>(partitions);
+	}
+
+	private static void checkRebuildable(Object target) {
+		Class<?> type = target.getClass();
+		if (!Modifier.isPublic(type.getModifiers())) {
+			throw new IllegalArgumentException("Cannot partition " + type.getName() + ": the type is not public");
+		}
+		try {
+			type.getConstructor();
+		}
+		catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(
+					"Cannot partition " + type.getName() + ": it has no public no-arg constructor", e);
+		}
+		if (target instanceof SortedMap && ((SortedMap<?, ?>) target).comparator() != null && type != TreeMap.class) {
+			throw new IllegalArgumentException(
+					"Cannot partition " + type.getName() + ": only a TreeMap keeps its comparator");
+		}
+	}
+
+	// LinkedHashMap exposes no accessor for its ordering mode, so it is probed on an empty clone; subclasses
+	// are left alone because their no-arg constructor restores the mode they choose
+	@SuppressWarnings("unchecked")
+	private static boolean isAccessOrdered(Object target) {
+		if (target.getClass() != LinkedHashMap.class) {
+			return false;
+		}
+		LinkedHashMap<Object, Object> probe = (LinkedHashMap<Object, Object>) ((LinkedHashMap<?, ?>) target).clone();
+		probe.clear();
+		Object first = new Object();
+		probe.put(first, Boolean.TRUE);
+		probe.put(new Object(), Boolean.TRUE);
+		probe.get(first);
+		return probe.keySet().iterator().next() != first;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object merge(Layout layout, List<Object> partitions) {
+		Class<?> type = layout.type;
+		boolean container = List.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+		if (!container) {
+			return partitions.get(0);
+		}
+		Object merged;
+		if (layout.accessOrdered) {
+			// partitions come back insertion ordered, the merged map takes over the iteration order as its
+			// access order
+			merged = new LinkedHashMap<>(16, 0.75f, true);
+		}
+		else {
+			merged = (!partitions.isEmpty() && partitions.get(0).getClass() == type) ? partitions.get(0)
+					: newInstance(type);
+		}
+		for (Object partition : partitions) {
+			if (partition == merged) {
+				continue;
+			}
+			if (merged instanceof Map) {
+				((Map<Object, Object>) merged).putAll((Map<?, ?>) partition);
+			}
+			else {
+				((Collection<Object>) merged).addAll((Collection<?>) partition);
+			}
+		}
+		return merged;
+	}
+
+	private static Object newInstance(Class<?> type) {
+		try {
+			return type.getConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+		}
+	}
+
+	private static final class Layout {
+
+		private final Class<?> type;
+
+		private final boolean accessOrdered;
+
+		private final String[] hashes;
+
+		private Layout(Class<?> type, boolean accessOrdered, String[] hashes) {
+			this.type = type;
+			this.accessOrdered = accessOrdered;
+			this.hashes = hashes;
+		}
+
+	}
+
+	private static final class PartitionedSnapshot<T> extends Snapshot<T> {
+
+		private final PartitionedSnapshotStorage<T> owner;
+
+		private final Layout layout;
+
+		private final byte[][] data;
+
+		private PartitionedSnapshot(PartitionedSnapshotStorage<T> owner, Layout layout, byte[][] data) {
+			this.owner = owner;
+			this.layout = layout;
+			this.data = data;
+		}
+
+		@Override
+		public T getState() {
+			return this.owner.decode(this.layout, this.data);
+		}
+
+	}
+
+}
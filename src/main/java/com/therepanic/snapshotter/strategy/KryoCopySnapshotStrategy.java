@@ -0,0 +1,92 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.util.Pool;
+import com.therepanic.snapshotter.ImmutableTypes;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.util.function.Consumer;
+
+public class KryoCopySnapshotStrategy<T> implements SnapshotStrategy<T> {
+
+	private final Pool<Kryo> kryoPool;
+
+	public KryoCopySnapshotStrategy(Consumer<Kryo> kryoConfigurer, int maximumCapacity) {
+		this.kryoPool = new Pool<Kryo>(true, false, maximumCapacity) {
+			@Override
+			protected Kryo create() {
+				Kryo kryo = new SharingKryo();
+				kryo.setRegistrationRequired(false);
+				kryoConfigurer.accept(kryo);
+				// keeps shared and cyclic references intact in the copied graph
+				kryo.setCopyReferences(true);
+				return kryo;
+			}
+		};
+	}
+
+	public KryoCopySnapshotStrategy(Consumer<Kryo> kryoConfigurer) {
+		this(kryoConfigurer, Runtime.getRuntime().availableProcessors());
+	}
+
+	public KryoCopySnapshotStrategy() {
+		this(kryo -> {
+		});
+	}
+
+	@Override
+	public T deepClone(T obj) {
+		if (obj == null || ImmutableTypes.isImmutable(obj.getClass())) {
+			return obj;
+		}
+		Kryo kryo = this.kryoPool.obtain();
+		try {
+			return kryo.copy(obj);
+		}
+		finally {
+			this.kryoPool.free(kryo);
+		}
+	}
+
+	@Override
+	public boolean copiesFully() {
+		return true;
+	}
+
+	// the instance is always created here and only configured by the caller, a Kryo handed in from
+	// outside could not route nested copies through this check
+	private static final class SharingKryo extends Kryo {
+
+		@Override
+		public <C> C copy(C object) {
+			// serializers copy nested values through this method, so immutable leaves
+			// anywhere in the graph are shared
+			if (object == null || ImmutableTypes.isImmutable(object.getClass())) {
+				return object;
+			}
+			return super.copy(object);
+		}
+
+	}
+
+}
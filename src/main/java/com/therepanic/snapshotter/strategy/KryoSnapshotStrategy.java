@@ -23,6 +23,7 @@ package com.therepanic.snapshotter.strategy;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.therepanic.snapshotter.ImmutableTypes;
 import com.therepanic.snapshotter.SnapshotStrategy;
 
 import java.io.ByteArrayInputStream;
@@ -39,6 +40,9 @@ public class KryoSnapshotStrategy<T> implements SnapshotStrategy<T> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public T deepClone(T obj) {
+		if (obj == null || ImmutableTypes.isImmutable(obj.getClass())) {
+			return obj;
+		}
 		ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
 		Output output = new Output(byteOutput);
 		this.kryo.writeObject(output, obj);
@@ -50,4 +54,9 @@ public class KryoSnapshotStrategy<T> implements SnapshotStrategy<T> {
 		return cloned;
 	}
 
+	@Override
+	public boolean copiesFully() {
+		return true;
+	}
+
 }
@@ -0,0 +1,451 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.FieldAccessPlan;
+import com.therepanic.snapshotter.ImmutableTypes;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Function;
+
+public class MethodHandleSnapshotStrategy<T> implements SnapshotStrategy<T> {
+
+	private static final Copier IMMUTABLE = (source, copies) -> source;
+
+	private static final Map<Class<?>, Copier> WRAPPERS = createWrappers();
+
+	private static final ClassValue<Copier> COPIERS = new ClassValue<Copier>() {
+		@Override
+		protected Copier computeValue(Class<?> type) {
+			return createCopier(type);
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T deepClone(T obj) {
+		return (T) copy(obj, new IdentityHashMap<>());
+	}
+
+	@Override
+	public boolean copiesFully() {
+		return true;
+	}
+
+	public static Object copy(Object source, Map<Object, Object> copies) {
+		if (source == null) {
+			return null;
+		}
+		Copier copier = COPIERS.get(source.getClass());
+		if (copier == IMMUTABLE) {
+			return source;
+		}
+		Object copy = copies.get(source);
+		return copy != null ? copy : copier.copy(source, copies);
+	}
+
+	private static Copier createCopier(Class<?> type) {
+		if (ImmutableTypes.isImmutable(type)) {
+			return IMMUTABLE;
+		}
+		if (type.isArray()) {
+			return type.getComponentType().isPrimitive() ? primitiveArrayCopier(type)
+					: objectArrayCopier(type.getComponentType());
+		}
+		if (isJdkType(type) && type != Object.class) {
+			if (EnumSet.class.isAssignableFrom(type)) {
+				return (source, copies) -> register(copies, source, ((EnumSet<?>) source).clone());
+			}
+			if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+				return containerCopier(type);
+			}
+			MethodHandle clone = findPublicMethod(type, "clone");
+			if (clone != null) {
+				return (source, copies) -> register(copies, source, invoke(clone, source));
+			}
+			// JDK internals cannot be opened reflectively on Java 9+, such as the value of an AtomicInteger
+			return serializationCopier(type);
+		}
+		FieldAccessPlan plan = FieldAccessPlan.of(type);
+		if (!plan.coversAllFields()) {
+			// the inherited JDK state is only reachable through the class's own serialization, or through
+			// Kryo's reflective copy when the JDK superclass is not Serializable
+			return Serializable.class.isAssignableFrom(type) ? serializationCopier(type) : kryoCopier(type);
+		}
+		return fieldCopier(plan);
+	}
+
+	private static Copier containerCopier(Class<?> type) {
+		Copier wrapper = WRAPPERS.get(type);
+		if (wrapper != null) {
+			return wrapper;
+		}
+		if (Collection.class.isAssignableFrom(type)) {
+			Function<Object, Collection<Object>> factory = collectionFactory(type);
+			if (factory != null) {
+				return collectionCopier(factory);
+			}
+		}
+		else {
+			Function<Object, Map<Object, Object>> factory = mapFactory(type);
+			if (factory != null) {
+				return mapCopier(factory);
+			}
+		}
+		// private implementations such as List.of keep their type only through serialization
+		return serializationCopier(type);
+	}
+
+	private static Copier serializationCopier(Class<?> type) {
+		if (!Serializable.class.isAssignableFrom(type)) {
+			return (source, copies) -> {
+				throw new IllegalStateException("Cannot deep copy " + type.getName()
+						+ ", it has no public clone or constructor and is not Serializable");
+			};
+		}
+		return (source, copies) -> register(copies, source, serializedCopy(source));
+	}
+
+	private static Copier kryoCopier(Class<?> type) {
+		return (source, copies) -> {
+			try {
+				// references into the rest of the graph are copied again, Kryo cannot see the copies made so far
+				return register(copies, source, KryoFallback.STRATEGY.deepClone(source));
+			}
+			catch (RuntimeException e) {
+				throw new IllegalStateException("Cannot deep copy " + type.getName()
+						+ ", it extends a JDK class that is not Serializable and Kryo could not copy it", e);
+			}
+		};
+	}
+
+	private static Object serializedCopy(Object source) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+				output.writeObject(source);
+			}
+			try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				return input.readObject();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		return type.getName().startsWith("java.");
+	}
+
+	private static Object register(Map<Object, Object> copies, Object source, Object copy) {
+		copies.put(source, copy);
+		return copy;
+	}
+
+	private static Copier fieldCopier(FieldAccessPlan plan) {
+		FieldAccessPlan.FieldAccessor[] referenceFields = plan.getReferenceFields();
+		return (source, copies) -> {
+			Object copy = register(copies, source, plan.newInstance());
+			plan.copyPrimitives(source, copy);
+			for (FieldAccessPlan.FieldAccessor field : referenceFields) {
+				field.set(copy, copy(field.get(source), copies));
+			}
+			return copy;
+		};
+	}
+
+	private static Copier primitiveArrayCopier(Class<?> type) {
+		Class<?> component = type.getComponentType();
+		if (component == int.class) {
+			return (source, copies) -> register(copies, source, ((int[]) source).clone());
+		}
+		if (component == long.class) {
+			return (source, copies) -> register(copies, source, ((long[]) source).clone());
+		}
+		if (component == double.class) {
+			return (source, copies) -> register(copies, source, ((double[]) source).clone());
+		}
+		if (component == float.class) {
+			return (source, copies) -> register(copies, source, ((float[]) source).clone());
+		}
+		if (component == byte.class) {
+			return (source, copies) -> register(copies, source, ((byte[]) source).clone());
+		}
+		if (component == char.class) {
+			return (source, copies) -> register(copies, source, ((char[]) source).clone());
+		}
+		if (component == short.class) {
+			return (source, copies) -> register(copies, source, ((short[]) source).clone());
+		}
+		return (source, copies) -> register(copies, source, ((boolean[]) source).clone());
+	}
+
+	private static Copier objectArrayCopier(Class<?> component) {
+		return (source, copies) -> {
+			Object[] array = (Object[]) source;
+			Object[] copy = (Object[]) register(copies, source, Array.newInstance(component, array.length));
+			for (int i = 0; i < array.length; i++) {
+				copy[i] = copy(array[i], copies);
+			}
+			return copy;
+		};
+	}
+
+	private static Copier collectionCopier(Function<Object, Collection<Object>> factory) {
+		return collectionCopier(factory, copy -> copy);
+	}
+
+	private static Copier collectionCopier(Function<Object, Collection<Object>> factory,
+			Function<Collection<Object>, Object> finisher) {
+		return (source, copies) -> {
+			Collection<Object> copy = factory.apply(source);
+			register(copies, source, copy);
+			for (Object element : (Collection<?>) source) {
+				copy.add(copy(element, copies));
+			}
+			return register(copies, source, finisher.apply(copy));
+		};
+	}
+
+	private static Copier mapCopier(Function<Object, Map<Object, Object>> factory) {
+		return mapCopier(factory, copy -> copy);
+	}
+
+	private static Copier mapCopier(Function<Object, Map<Object, Object>> factory,
+			Function<Map<Object, Object>, Object> finisher) {
+		return (source, copies) -> {
+			Map<Object, Object> copy = factory.apply(source);
+			register(copies, source, copy);
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) source).entrySet()) {
+				copy.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+			}
+			return register(copies, source, finisher.apply(copy));
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Collection<Object>> collectionFactory(Class<?> type) {
+		if (SortedSet.class.isAssignableFrom(type)) {
+			MethodHandle constructor = findPublicConstructor(type, Comparator.class);
+			if (constructor != null) {
+				return source -> (Collection<Object>) invoke(constructor, ((SortedSet<?>) source).comparator());
+			}
+		}
+		if (type == PriorityQueue.class) {
+			return source -> (Collection<Object>) new PriorityQueue<>(Math.max(1, ((PriorityQueue<?>) source).size()),
+					(Comparator<Object>) ((PriorityQueue<?>) source).comparator());
+		}
+		if (type == PriorityBlockingQueue.class) {
+			return source -> (Collection<Object>) new PriorityBlockingQueue<>(
+					Math.max(1, ((PriorityBlockingQueue<?>) source).size()),
+					(Comparator<Object>) ((PriorityBlockingQueue<?>) source).comparator());
+		}
+		MethodHandle constructor = findPublicConstructor(type);
+		if (constructor != null) {
+			return source -> (Collection<Object>) invoke(constructor);
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Map<Object, Object>> mapFactory(Class<?> type) {
+		if (SortedMap.class.isAssignableFrom(type)) {
+			MethodHandle constructor = findPublicConstructor(type, Comparator.class);
+			if (constructor != null) {
+				return source -> (Map<Object, Object>) invoke(constructor, ((SortedMap<?, ?>) source).comparator());
+			}
+		}
+		if (EnumMap.class.isAssignableFrom(type)) {
+			return source -> (Map<Object, Object>) (Map<?, ?>) ((EnumMap<?, ?>) source).clone();
+		}
+		if (type == LinkedHashMap.class) {
+			// the clone keeps the access-order flag, which no public accessor exposes
+			return source -> {
+				Map<Object, Object> copy = (Map<Object, Object>) ((LinkedHashMap<?, ?>) source).clone();
+				copy.clear();
+				return copy;
+			};
+		}
+		MethodHandle constructor = findPublicConstructor(type);
+		if (constructor != null) {
+			return source -> (Map<Object, Object>) invoke(constructor);
+		}
+		return null;
+	}
+
+	private static MethodHandle findPublicConstructor(Class<?> type, Class<?>... parameterTypes) {
+		try {
+			return MethodHandles.publicLookup()
+				.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+				.asType(MethodType.genericMethodType(parameterTypes.length));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	private static MethodHandle findPublicMethod(Class<?> type, String name) {
+		try {
+			return MethodHandles.publicLookup()
+				.findVirtual(type, name, MethodType.methodType(Object.class))
+				.asType(MethodType.genericMethodType(1));
+		}
+		catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	private static Object invoke(MethodHandle handle) {
+		try {
+			return (Object) handle.invokeExact();
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Object invoke(MethodHandle handle, Object argument) {
+		try {
+			return (Object) handle.invokeExact(argument);
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<Class<?>, Copier> createWrappers() {
+		// JDK views with private classes are rebuilt through the same factory so the copy keeps their type
+		Map<Class<?>, Copier> wrappers = new HashMap<>();
+		Function<Object, Collection<Object>> list = source -> new ArrayList<>();
+		Function<Object, Collection<Object>> set = source -> new LinkedHashSet<>();
+		Function<Object, Collection<Object>> sortedSet = source -> new TreeSet<>(
+				(Comparator<Object>) ((SortedSet<?>) source).comparator());
+		Function<Object, Map<Object, Object>> map = source -> new LinkedHashMap<>();
+		Function<Object, Map<Object, Object>> sortedMap = source -> new TreeMap<>(
+				(Comparator<Object>) ((SortedMap<?, ?>) source).comparator());
+		addCollection(wrappers, Arrays.asList(), list, copy -> Arrays.asList(copy.toArray()));
+		addCollection(wrappers, Collections.unmodifiableCollection(new ArrayList<>()), list,
+				Collections::unmodifiableCollection);
+		addCollection(wrappers, Collections.unmodifiableList(new ArrayList<>()), list,
+				copy -> Collections.unmodifiableList((List<Object>) copy));
+		addCollection(wrappers, Collections.unmodifiableList(new LinkedList<>()), list,
+				copy -> Collections.unmodifiableList(new LinkedList<>(copy)));
+		addCollection(wrappers, Collections.unmodifiableSet(new HashSet<>()), set,
+				copy -> Collections.unmodifiableSet((Set<Object>) copy));
+		addCollection(wrappers, Collections.unmodifiableSortedSet(new TreeSet<>()), sortedSet,
+				copy -> Collections.unmodifiableSortedSet((SortedSet<Object>) copy));
+		addCollection(wrappers, Collections.unmodifiableNavigableSet(new TreeSet<>()), sortedSet,
+				copy -> Collections.unmodifiableNavigableSet((NavigableSet<Object>) copy));
+		addCollection(wrappers, Collections.synchronizedCollection(new ArrayList<>()), list,
+				Collections::synchronizedCollection);
+		addCollection(wrappers, Collections.synchronizedList(new ArrayList<>()), list,
+				copy -> Collections.synchronizedList((List<Object>) copy));
+		addCollection(wrappers, Collections.synchronizedList(new LinkedList<>()), list,
+				copy -> Collections.synchronizedList(new LinkedList<>(copy)));
+		addCollection(wrappers, Collections.synchronizedSet(new HashSet<>()), set,
+				copy -> Collections.synchronizedSet((Set<Object>) copy));
+		addCollection(wrappers, Collections.synchronizedSortedSet(new TreeSet<>()), sortedSet,
+				copy -> Collections.synchronizedSortedSet((SortedSet<Object>) copy));
+		addCollection(wrappers, Collections.synchronizedNavigableSet(new TreeSet<>()), sortedSet,
+				copy -> Collections.synchronizedNavigableSet((NavigableSet<Object>) copy));
+		addMap(wrappers, Collections.unmodifiableMap(new HashMap<>()), map, Collections::unmodifiableMap);
+		addMap(wrappers, Collections.unmodifiableSortedMap(new TreeMap<>()), sortedMap,
+				copy -> Collections.unmodifiableSortedMap((SortedMap<Object, Object>) copy));
+		addMap(wrappers, Collections.unmodifiableNavigableMap(new TreeMap<>()), sortedMap,
+				copy -> Collections.unmodifiableNavigableMap((NavigableMap<Object, Object>) copy));
+		addMap(wrappers, Collections.synchronizedMap(new HashMap<>()), map, Collections::synchronizedMap);
+		addMap(wrappers, Collections.synchronizedSortedMap(new TreeMap<>()), sortedMap,
+				copy -> Collections.synchronizedSortedMap((SortedMap<Object, Object>) copy));
+		addMap(wrappers, Collections.synchronizedNavigableMap(new TreeMap<>()), sortedMap,
+				copy -> Collections.synchronizedNavigableMap((NavigableMap<Object, Object>) copy));
+		return wrappers;
+	}
+
+	private static void addCollection(Map<Class<?>, Copier> wrappers, Collection<?> sample,
+			Function<Object, Collection<Object>> factory, Function<Collection<Object>, Object> finisher) {
+		wrappers.putIfAbsent(sample.getClass(), collectionCopier(factory, finisher));
+	}
+
+	private static void addMap(Map<Class<?>, Copier> wrappers, Map<?, ?> sample,
+			Function<Object, Map<Object, Object>> factory, Function<Map<Object, Object>, Object> finisher) {
+		wrappers.putIfAbsent(sample.getClass(), mapCopier(factory, finisher));
+	}
+
+	private static final class KryoFallback {
+
+		private static final KryoCopySnapshotStrategy<Object> STRATEGY = new KryoCopySnapshotStrategy<>();
+
+	}
+
+	@FunctionalInterface
+	private interface Copier {
+
+		Object copy(Object source, Map<Object, Object> copies);
+
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.util.function.Supplier;
+
+public class PooledKryoSnapshotStrategy<T> implements SnapshotStrategy<T> {
+
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private final Pool<Kryo> kryoPool;
+
+	private final Pool<Output> outputPool;
+
+	private final Pool<Input> inputPool;
+
+	public PooledKryoSnapshotStrategy(Supplier<Kryo> kryoFactory, int maximumCapacity, int bufferSize) {
+		this.kryoPool = new Pool<Kryo>(true, false, maximumCapacity) {
+			@Override
+			protected Kryo create() {
+				return kryoFactory.get();
+			}
+		};
+		this.outputPool = new Pool<Output>(true, false, maximumCapacity) {
+			@Override
+			protected Output create() {
+				return new Output(bufferSize, -1);
+			}
+		};
+		this.inputPool = new Pool<Input>(true, false, maximumCapacity) {
+			@Override
+			protected Input create() {
+				return new Input();
+			}
+		};
+	}
+
+	public PooledKryoSnapshotStrategy(Supplier<Kryo> kryoFactory, int maximumCapacity) {
+		this(kryoFactory, maximumCapacity, DEFAULT_BUFFER_SIZE);
+	}
+
+	public PooledKryoSnapshotStrategy(Supplier<Kryo> kryoFactory) {
+		this(kryoFactory, Runtime.getRuntime().availableProcessors());
+	}
+
+	public PooledKryoSnapshotStrategy() {
+		this(PooledKryoSnapshotStrategy::createDefaultKryo);
+	}
+
+	private static Kryo createDefaultKryo() {
+		Kryo kryo = new Kryo();
+		kryo.setRegistrationRequired(false);
+		return kryo;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T deepClone(T obj) {
+		Kryo kryo = this.kryoPool.obtain();
+		Output output = this.outputPool.obtain();
+		Input input = this.inputPool.obtain();
+		try {
+			output.setPosition(0);
+			kryo.writeObject(output, obj);
+			// read straight from the output's backing array instead of copying it out
+			input.setBuffer(output.getBuffer(), 0, output.position());
+			return (T) kryo.readObject(input, obj.getClass());
+		}
+		finally {
+			this.inputPool.free(input);
+			this.outputPool.free(output);
+			this.kryoPool.free(kryo);
+		}
+	}
+
+	@Override
+	public boolean copiesFully() {
+		return true;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.FieldAccessPlan;
+import com.therepanic.snapshotter.ImmutableTypes;
+import com.therepanic.snapshotter.SnapshotStrategy;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+public class SharingSnapshotStrategy<T> implements SnapshotStrategy<T> {
+
+	private static final Object IN_PROGRESS = new Object();
+
+	private static final CycleDetectedException CYCLE_DETECTED = new CycleDetectedException();
+
+	private T previous;
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized T deepClone(T obj) {
+		T copy;
+		try {
+			copy = (T) share(obj, this.previous, new IdentityHashMap<>(), new IdentityHashMap<>());
+		}
+		catch (CycleDetectedException e) {
+			// sharing a cycle would need a second pass, an independent copy is always
+			// correct
+			copy = (T) MethodHandleSnapshotStrategy.copy(obj, new IdentityHashMap<>());
+		}
+		this.previous = copy;
+		return copy;
+	}
+
+	@Override
+	public boolean sharesState() {
+		return true;
+	}
+
+	public synchronized void reset() {
+		this.previous = null;
+	}
+
+	private static Object share(Object live, Object previous, Map<Object, Object> copies,
+			Map<Object, Object> claims) {
+		if (live == null) {
+			return null;
+		}
+		if (ImmutableTypes.isImmutable(live.getClass())) {
+			return live.equals(previous) ? previous : live;
+		}
+		Object known = copies.get(live);
+		if (known == IN_PROGRESS) {
+			throw CYCLE_DETECTED;
+		}
+		if (known != null) {
+			return known;
+		}
+		// the live object may alias the previous copy after a replacing restore, such a
+		// copy must not be handed out again because the caller is free to mutate it
+		if (previous == null || previous == live || previous.getClass() != live.getClass()) {
+			return MethodHandleSnapshotStrategy.copy(live, copies);
+		}
+		copies.put(live, IN_PROGRESS);
+		boolean unchanged = shareChildren(live, previous, copies, claims);
+		copies.remove(live);
+		// two equal live objects must not collapse onto one previous copy, that would add
+		// aliasing the live graph does not have
+		Object owner = claims.get(previous);
+		if (unchanged && (owner == null || owner == live)) {
+			claims.put(previous, live);
+			copies.put(live, previous);
+			return previous;
+		}
+		// children are already registered, so only the changed spine is allocated
+		return MethodHandleSnapshotStrategy.copy(live, copies);
+	}
+
+	private static boolean shareChildren(Object live, Object previous, Map<Object, Object> copies,
+			Map<Object, Object> claims) {
+		Class<?> type = live.getClass();
+		if (type.isArray()) {
+			if (type.getComponentType().isPrimitive()) {
+				return Objects.deepEquals(live, previous);
+			}
+			Object[] liveArray = (Object[]) live;
+			Object[] previousArray = (Object[]) previous;
+			boolean unchanged = liveArray.length == previousArray.length;
+			for (int i = 0; i < liveArray.length; i++) {
+				Object previousElement = (i < previousArray.length) ? previousArray[i] : null;
+				unchanged &= share(liveArray[i], previousElement, copies, claims) == previousElement;
+			}
+			return unchanged;
+		}
+		if (isJdkType(type)) {
+			if (live instanceof Collection) {
+				return shareElements(((Collection<?>) live).iterator(), ((Collection<?>) previous).iterator(),
+						copies, claims);
+			}
+			if (live instanceof Map) {
+				// entries are paired by iteration order, which is stable for the maps that
+				// matter here, a mismatch only costs sharing and never correctness
+				Iterator<? extends Map.Entry<?, ?>> liveEntries = ((Map<?, ?>) live).entrySet().iterator();
+				Iterator<? extends Map.Entry<?, ?>> previousEntries = ((Map<?, ?>) previous).entrySet().iterator();
+				boolean unchanged = ((Map<?, ?>) live).size() == ((Map<?, ?>) previous).size();
+				while (liveEntries.hasNext()) {
+					Map.Entry<?, ?> entry = liveEntries.next();
+					Map.Entry<?, ?> previousEntry = previousEntries.hasNext() ? previousEntries.next() : null;
+					Object previousKey = (previousEntry != null) ? previousEntry.getKey() : null;
+					Object previousValue = (previousEntry != null) ? previousEntry.getValue() : null;
+					unchanged &= share(entry.getKey(), previousKey, copies, claims) == previousKey;
+					unchanged &= share(entry.getValue(), previousValue, copies, claims) == previousValue;
+				}
+				return unchanged;
+			}
+			return live.equals(previous);
+		}
+		FieldAccessPlan plan = FieldAccessPlan.of(type);
+		if (!plan.coversAllFields()) {
+			// inherited JDK state is invisible to the comparison, so it is never assumed unchanged
+			return false;
+		}
+		boolean unchanged = plan.primitivesEqual(live, previous);
+		for (FieldAccessPlan.FieldAccessor field : plan.getReferenceFields()) {
+			Object previousValue = field.get(previous);
+			unchanged &= share(field.get(live), previousValue, copies, claims) == previousValue;
+		}
+		return unchanged;
+	}
+
+	private static boolean shareElements(Iterator<?> live, Iterator<?> previous, Map<Object, Object> copies,
+			Map<Object, Object> claims) {
+		boolean unchanged = true;
+		while (live.hasNext()) {
+			Object previousElement = previous.hasNext() ? previous.next() : null;
+			unchanged &= share(live.next(), previousElement, copies, claims) == previousElement;
+		}
+		return unchanged && !previous.hasNext();
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		return type.getName().startsWith("java.");
+	}
+
+	private static final class CycleDetectedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private CycleDetectedException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+}
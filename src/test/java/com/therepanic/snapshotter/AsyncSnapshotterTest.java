@@ -0,0 +1,228 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import com.therepanic.snapshotter.storage.MemorySnapshotStorage;
+import com.therepanic.snapshotter.strategy.MethodHandleSnapshotStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncSnapshotterTest {
+
+	static class DummyState {
+
+		private String data;
+
+		public DummyState() {
+		}
+
+		public DummyState(String data) {
+			this.data = data;
+		}
+
+		public String getData() {
+			return data;
+		}
+
+	}
+
+	static class GatedStorage extends MemorySnapshotStorage<DummyState> {
+
+		private final CountDownLatch gate = new CountDownLatch(1);
+
+		private final CountDownLatch entered = new CountDownLatch(1);
+
+		@Override
+		public void save(String name, Snapshot<DummyState> snapshot) {
+			this.entered.countDown();
+			try {
+				this.gate.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.save(name, snapshot);
+		}
+
+	}
+
+	private final DummyState target = new DummyState("initial");
+
+	private final GatedStorage storage = new GatedStorage();
+
+	private AsyncSnapshotter<DummyState> async;
+
+	private AsyncSnapshotter<DummyState> create(int capacity, OverflowPolicy policy) {
+		this.async = new AsyncSnapshotter<>(new DefaultSnapshotter<>(this.target, this.storage,
+				new MethodHandleSnapshotStrategy<>(), new ArrayList<>()), capacity, policy);
+		return this.async;
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.storage.gate.countDown();
+		if (this.async != null) {
+			this.async.close();
+		}
+	}
+
+	@Test
+	void testSaveCapturesOnCallerAndPersistsInBackground() throws Exception {
+		create(4, OverflowPolicy.BLOCK);
+		CompletableFuture<Void> first = async.save("first");
+		target.data = "changed";
+		storage.entered.await(5, TimeUnit.SECONDS);
+		assertFalse(first.isDone());
+		assertFalse(storage.hasSnapshot("first"));
+		storage.gate.countDown();
+		first.get(5, TimeUnit.SECONDS);
+		assertEquals("initial", storage.load("first").getState().getData());
+	}
+
+	@Test
+	void testDropOldest() throws Exception {
+		create(1, OverflowPolicy.DROP_OLDEST);
+		CompletableFuture<Void> inFlight = async.save("in-flight");
+		storage.entered.await(5, TimeUnit.SECONDS);
+		CompletableFuture<Void> dropped = async.save("dropped");
+		CompletableFuture<Void> kept = async.save("kept");
+		assertTrue(dropped.isCancelled());
+		assertEquals(1, async.getDroppedCount());
+		storage.gate.countDown();
+		kept.get(5, TimeUnit.SECONDS);
+		assertTrue(inFlight.isDone());
+		assertFalse(storage.hasSnapshot("dropped"));
+		assertTrue(storage.hasSnapshot("kept"));
+	}
+
+	@Test
+	void testCoalesceByName() throws Exception {
+		create(4, OverflowPolicy.COALESCE);
+		async.save("in-flight");
+		storage.entered.await(5, TimeUnit.SECONDS);
+		CompletableFuture<Void> first = async.save("latest");
+		target.data = "newer";
+		CompletableFuture<Void> second = async.save("latest");
+		assertSame(first, second);
+		assertEquals(1, async.getPendingCount());
+		storage.gate.countDown();
+		second.get(5, TimeUnit.SECONDS);
+		assertEquals("newer", storage.load("latest").getState().getData());
+	}
+
+	@Test
+	void testCloseFlushesAndRejectsNewSaves() {
+		create(2, OverflowPolicy.BLOCK);
+		storage.gate.countDown();
+		async.save("one");
+		async.save("two");
+		async.close();
+		assertTrue(storage.hasSnapshot("one"));
+		assertTrue(storage.hasSnapshot("two"));
+		assertThrows(IllegalStateException.class, () -> async.save("three"));
+	}
+
+	@Test
+	void testErrorFromSaveCompletesFutureAndKeepsDraining() throws Exception {
+		MemorySnapshotStorage<DummyState> failing = new MemorySnapshotStorage<DummyState>() {
+			@Override
+			public void save(String name, Snapshot<DummyState> snapshot) {
+				if (name.equals("broken")) {
+					throw new AssertionError("storage failure");
+				}
+				super.save(name, snapshot);
+			}
+		};
+		this.async = new AsyncSnapshotter<>(new DefaultSnapshotter<>(this.target, failing,
+				new MethodHandleSnapshotStrategy<>(), new ArrayList<>()), 4, OverflowPolicy.BLOCK);
+		CompletableFuture<Void> broken = async.save("broken");
+		CompletableFuture<Void> next = async.save("next");
+		async.flush();
+		assertTrue(broken.isCompletedExceptionally());
+		next.get(5, TimeUnit.SECONDS);
+		assertTrue(failing.hasSnapshot("next"));
+	}
+
+	@Test
+	void testRejectedExecutionFailsPendingSaves() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		this.async = new AsyncSnapshotter<>(executor, new DefaultSnapshotter<>(this.target, this.storage,
+				new MethodHandleSnapshotStrategy<>(), new ArrayList<>()), 4, OverflowPolicy.BLOCK);
+		CompletableFuture<Void> rejected = async.save("rejected");
+		assertTrue(rejected.isCompletedExceptionally());
+		async.flush();
+		assertEquals(0, async.getPendingCount());
+	}
+
+	@Test
+	void testEncodesOnPipelineThread() throws Exception {
+		Thread caller = Thread.currentThread();
+		MemorySnapshotStorage<DummyState> encoding = new MemorySnapshotStorage<DummyState>(
+				new KryoSnapshotSerializer<>(DummyState.class)) {
+			@Override
+			public Snapshot<DummyState> capture(DummyState target, SnapshotStrategy<DummyState> strategy) {
+				throw new AssertionError("the caller must not encode");
+			}
+
+			@Override
+			public void save(String name, Snapshot<DummyState> snapshot) {
+				assertNotSame(caller, Thread.currentThread());
+				super.save(name, snapshot);
+			}
+		};
+		this.async = new AsyncSnapshotter<>(new DefaultSnapshotter<>(this.target, encoding,
+				new MethodHandleSnapshotStrategy<>(), new ArrayList<>()), 4, OverflowPolicy.BLOCK);
+		async.save("encoded").get(5, TimeUnit.SECONDS);
+		assertEquals("initial", encoding.load("encoded").getState().getData());
+	}
+
+	@Test
+	void testSavesOtherSnapshottersUnderTheirLock() throws Exception {
+		CompletableFuture<Boolean> savedUnderLock = new CompletableFuture<>();
+		AtomicReference<Object> holder = new AtomicReference<>();
+		@SuppressWarnings("unchecked")
+		Snapshotter<DummyState> snapshotter = (Snapshotter<DummyState>) Proxy.newProxyInstance(
+				getClass().getClassLoader(), new Class<?>[] { Snapshotter.class }, (proxy, method, args) -> {
+					if (method.getName().equals("save") && args != null && args.length == 1) {
+						savedUnderLock.complete(Thread.holdsLock(holder.get()));
+					}
+					return null;
+				});
+		holder.set(snapshotter);
+		this.async = new AsyncSnapshotter<>(snapshotter);
+		async.save("proxied").get(5, TimeUnit.SECONDS);
+		assertTrue(savedUnderLock.get(5, TimeUnit.SECONDS));
+	}
+
+}
@@ -79,6 +79,28 @@ class DefaultSnapshotterTest {
 		assertEquals("initial", target.getData());
 	}
 
+	@Test
+	void testSaveAndRestoreInPlace() {
+		Kryo newKryo = new Kryo();
+		newKryo.setRegistrationRequired(false);
+		DefaultSnapshotter<DummyState> inPlace = new DefaultSnapshotter<>(target, new MemorySnapshotStorage<>(),
+				new KryoSnapshotStrategy<>(newKryo), new ArrayList<>(), RestoreMode.IN_PLACE);
+		inPlace.save();
+		target.setData("modified");
+		assertTrue(inPlace.restore());
+		assertEquals("initial", target.getData());
+	}
+
+	@Test
+	void testCaptureAndSaveLater() {
+		Snapshot<DummyState> snapshot = snapshotter.capture();
+		target.setData("modified");
+		assertFalse(snapshotter.hasSnapshot("captured"));
+		snapshotter.save("captured", snapshot);
+		assertTrue(snapshotter.restore("captured"));
+		assertEquals("initial", target.getData());
+	}
+
 	@Test
 	void testSaveAndRestoreNamed() {
 		snapshotter.save("snap1");
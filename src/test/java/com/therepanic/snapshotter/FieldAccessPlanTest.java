@@ -0,0 +1,79 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldAccessPlanTest {
+
+	static class Base {
+
+		static String shared = "shared";
+
+		protected int count;
+
+		protected String name;
+
+	}
+
+	static class Child extends Base {
+
+		private double ratio;
+
+		private char flag;
+
+		private boolean active;
+
+		private Object payload;
+
+	}
+
+	@Test
+	void testPlanCoversHierarchyWithoutStaticFields() {
+		FieldAccessPlan plan = FieldAccessPlan.of(Child.class);
+		assertEquals(6, plan.getFields().length);
+		assertEquals(2, plan.getReferenceFields().length);
+		assertSame(plan, FieldAccessPlan.of(Child.class));
+	}
+
+	@Test
+	void testCopyFields() {
+		Child source = new Child();
+		source.count = 3;
+		source.name = "source";
+		source.ratio = 0.5;
+		source.flag = 'x';
+		source.active = true;
+		source.payload = new Object();
+
+		Child target = (Child) FieldAccessPlan.of(Child.class).newInstance();
+		FieldAccessPlan.of(Child.class).copyFields(source, target);
+		assertEquals(3, target.count);
+		assertEquals("source", target.name);
+		assertEquals(0.5, target.ratio, 0.0);
+		assertEquals('x', target.flag);
+		assertTrue(target.active);
+		assertSame(source.payload, target.payload);
+	}
+
+}
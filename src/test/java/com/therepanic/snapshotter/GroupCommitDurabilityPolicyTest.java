@@ -0,0 +1,123 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitDurabilityPolicyTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void sharedChannelIsForcedOncePerBatch() throws Exception {
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ofSeconds(10), 4);
+		try (FileChannel channel = FileChannel.open(tempDir.resolve("shared"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE)) {
+			List<Thread> writers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				writers.add(new Thread(() -> {
+					try {
+						policy.afterWrite(channel);
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+			}
+			long start = System.nanoTime();
+			writers.forEach(Thread::start);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+			// a full batch is released without waiting out the window
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		}
+		assertEquals(1, policy.getBatchCount());
+		assertEquals(1, policy.getSyncCount());
+		assertEquals(4, policy.getWriteCount());
+	}
+
+	@Test
+	void zeroWaitCommitsImmediately() throws IOException {
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ZERO);
+		try (FileChannel channel = FileChannel.open(tempDir.resolve("single"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE)) {
+			policy.afterWrite(channel);
+			policy.afterWrite(channel);
+		}
+		assertEquals(2, policy.getBatchCount());
+		assertEquals(0, policy.getMaxWait(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void rethrowsOriginalFailureType() throws IOException {
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ZERO);
+		FileChannel channel = FileChannel.open(tempDir.resolve("closed"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		channel.close();
+		assertThrows(ClosedChannelException.class, () -> policy.afterWrite(channel));
+	}
+
+	@Test
+	void interruptedLeaderDoesNotCloseSharedChannel() throws IOException {
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ZERO);
+		try (FileChannel channel = FileChannel.open(tempDir.resolve("shared"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE)) {
+			Thread.currentThread().interrupt();
+			try {
+				policy.afterWrite(channel);
+				assertTrue(Thread.currentThread().isInterrupted());
+			}
+			finally {
+				Thread.interrupted();
+			}
+			assertTrue(channel.isOpen());
+		}
+	}
+
+	@Test
+	void directoriesAreSyncedOncePerBatch() throws IOException {
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ZERO);
+		policy.afterPublish(tempDir.resolve("published"));
+		assertEquals(1, policy.getSyncCount());
+	}
+
+	@Test
+	void rejectsInvalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new GroupCommitDurabilityPolicy(Duration.ofMillis(-1)));
+		assertThrows(IllegalArgumentException.class, () -> new GroupCommitDurabilityPolicy(Duration.ZERO, 0));
+	}
+
+}
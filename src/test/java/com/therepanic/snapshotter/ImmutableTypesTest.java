@@ -0,0 +1,141 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImmutableTypesTest {
+
+	enum Color {
+
+		RED
+
+	}
+
+	static final class Point {
+
+		private final int x;
+
+		private final String label;
+
+		private final LocalDate date;
+
+		private final ZoneId zone;
+
+		private final Color color;
+
+		Point(int x, String label) {
+			this.x = x;
+			this.label = label;
+			this.date = LocalDate.now();
+			this.zone = ZoneId.systemDefault();
+			this.color = Color.RED;
+		}
+
+	}
+
+	static final class Line {
+
+		private final Point start;
+
+		private final Point end;
+
+		Line(Point start, Point end) {
+			this.start = start;
+			this.end = end;
+		}
+
+	}
+
+	static class MutablePoint {
+
+		private int x;
+
+	}
+
+	static final class Holder {
+
+		private final List<String> values = new ArrayList<>();
+
+	}
+
+	static final class Node {
+
+		private final Node next;
+
+		Node(Node next) {
+			this.next = next;
+		}
+
+	}
+
+	@Immutable
+	static class Marked {
+
+		private int cached;
+
+	}
+
+	@Test
+	void testJdkValueTypes() {
+		assertTrue(ImmutableTypes.isImmutable(String.class));
+		assertTrue(ImmutableTypes.isImmutable(Integer.class));
+		assertTrue(ImmutableTypes.isImmutable(int.class));
+		assertTrue(ImmutableTypes.isImmutable(BigDecimal.class));
+		assertTrue(ImmutableTypes.isImmutable(LocalDate.class));
+		assertTrue(ImmutableTypes.isImmutable(Color.class));
+		assertFalse(ImmutableTypes.isImmutable(ArrayList.class));
+		assertFalse(ImmutableTypes.isImmutable(int[].class));
+		assertFalse(ImmutableTypes.isImmutable(java.util.Date.class));
+	}
+
+	@Test
+	void testOnlyFinalJavaTimeTypes() {
+		assertTrue(ImmutableTypes.isImmutable(ZoneId.class));
+		assertTrue(ImmutableTypes.isImmutable(Duration.class));
+		assertTrue(ImmutableTypes.isImmutable(DateTimeFormatter.class));
+		assertFalse(ImmutableTypes.isImmutable(DateTimeFormatterBuilder.class));
+		assertFalse(ImmutableTypes.isImmutable(DateTimeException.class));
+	}
+
+	@Test
+	void testUserTypes() {
+		assertTrue(ImmutableTypes.isImmutable(Point.class));
+		assertTrue(ImmutableTypes.isImmutable(Line.class));
+		assertTrue(ImmutableTypes.isImmutable(Marked.class));
+		assertFalse(ImmutableTypes.isImmutable(MutablePoint.class));
+		assertFalse(ImmutableTypes.isImmutable(Holder.class));
+		assertFalse(ImmutableTypes.isImmutable(Node.class));
+	}
+
+}
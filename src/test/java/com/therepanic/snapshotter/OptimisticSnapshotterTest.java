@@ -0,0 +1,112 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import com.therepanic.snapshotter.storage.MemorySnapshotStorage;
+import com.therepanic.snapshotter.strategy.MethodHandleSnapshotStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticSnapshotterTest {
+
+	static class Account implements Versioned {
+
+		private volatile long version;
+
+		private long debit;
+
+		private long credit;
+
+		void transfer() {
+			this.version++;
+			this.debit++;
+			this.credit++;
+			this.version++;
+		}
+
+		@Override
+		public long getVersion() {
+			return this.version;
+		}
+
+	}
+
+	@Test
+	void testCapturesConsistentStateWhileWriterRuns() throws Exception {
+		Account account = new Account();
+		OptimisticSnapshotter<Account> snapshotter = new OptimisticSnapshotter<>(account,
+				new MemorySnapshotStorage<>(), new MethodHandleSnapshotStrategy<>(), new ArrayList<>());
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread writer = new Thread(() -> {
+			while (running.get()) {
+				account.transfer();
+			}
+		});
+		writer.start();
+		try {
+			for (int i = 0; i < 200; i++) {
+				snapshotter.save("snapshot");
+				Account state = snapshotter.capture().getState();
+				assertEquals(state.debit, state.credit);
+				assertEquals(0, state.version & 1);
+			}
+		}
+		finally {
+			running.set(false);
+			writer.join();
+		}
+	}
+
+	@Test
+	void testFallsBackToLockAfterRetries() {
+		Account account = new Account();
+		AtomicLong reads = new AtomicLong();
+		OptimisticSnapshotter<Account> snapshotter = new OptimisticSnapshotter<>(account,
+				new MemorySnapshotStorage<>(), new MethodHandleSnapshotStrategy<>(), new ArrayList<>(),
+				RestoreMode.REPLACE, () -> Math.min(reads.incrementAndGet(), 40) * 2, 3);
+		snapshotter.save("snapshot");
+		assertTrue(snapshotter.hasSnapshot("snapshot"));
+		assertEquals(4, snapshotter.getRetryCount());
+		assertEquals(1, snapshotter.getFallbackCount());
+	}
+
+	@Test
+	void testFallbackGivesUpWhenVersionStaysOdd() {
+		OptimisticSnapshotter<Account> snapshotter = new OptimisticSnapshotter<>(new Account(),
+				new MemorySnapshotStorage<>(), new MethodHandleSnapshotStrategy<>(), new ArrayList<>(),
+				RestoreMode.REPLACE, () -> 1, 2, Duration.ofMillis(20));
+		assertThrows(IllegalStateException.class, snapshotter::capture);
+		assertEquals(1, snapshotter.getFallbackCount());
+	}
+
+	@Test
+	void testRequiresVersionSource() {
+		assertThrows(IllegalArgumentException.class, () -> new OptimisticSnapshotter<>("plain",
+				new MemorySnapshotStorage<>(), new MethodHandleSnapshotStrategy<>(), new ArrayList<>()));
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeriodicDurabilityPolicyTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void syncsEverythingWrittenSinceTheLastInterval() throws IOException {
+		DurabilityPolicy policy = DurabilityPolicy.periodic(Duration.ZERO);
+		Path closed = tempDir.resolve("closed");
+		try (FileChannel channel = FileChannel.open(closed, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 1 }));
+			policy.afterWrite(channel);
+		}
+		policy.afterPublish(closed);
+		Path removed = tempDir.resolve("removed");
+		Files.write(removed, new byte[] { 2 });
+		Files.delete(removed);
+		// files removed since they were written are skipped
+		policy.afterPublish(removed);
+		assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(closed));
+	}
+
+	@Test
+	void flushesInTheBackgroundWithoutAFurtherSave() throws Exception {
+		try (CountingChannel channel = new CountingChannel(tempDir.resolve("idle"));
+				PeriodicDurabilityPolicy policy = new PeriodicDurabilityPolicy(Duration.ofMillis(10))) {
+			policy.afterWrite(channel);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (channel.forces == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(1, channel.forces);
+		}
+	}
+
+	@Test
+	void closeFlushesPendingWrites() throws IOException {
+		try (CountingChannel channel = new CountingChannel(tempDir.resolve("pending"))) {
+			PeriodicDurabilityPolicy policy = new PeriodicDurabilityPolicy(Duration.ofHours(1));
+			policy.afterWrite(channel);
+			assertEquals(0, channel.forces);
+			policy.close();
+			assertEquals(1, channel.forces);
+		}
+	}
+
+	@Test
+	void rejectsNegativeInterval() {
+		assertThrows(IllegalArgumentException.class, () -> new PeriodicDurabilityPolicy(Duration.ofMillis(-1)));
+	}
+
+	private static final class CountingChannel extends FileChannel {
+
+		private final FileChannel delegate;
+
+		private volatile int forces;
+
+		private CountingChannel(Path file) throws IOException {
+			this.delegate = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.READ);
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			this.delegate.force(metaData);
+			this.forces++;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return this.delegate.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			return this.delegate.read(dsts, offset, length);
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return this.delegate.write(src);
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			return this.delegate.write(srcs, offset, length);
+		}
+
+		@Override
+		public long position() throws IOException {
+			return this.delegate.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			this.delegate.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return this.delegate.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			this.delegate.truncate(size);
+			return this;
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return this.delegate.transferTo(position, count, target);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			return this.delegate.transferFrom(src, position, count);
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return this.delegate.read(dst, position);
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			return this.delegate.write(src, position);
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return this.delegate.map(mode, position, size);
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return this.delegate.lock(position, size, shared);
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return this.delegate.tryLock(position, size, shared);
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			this.delegate.close();
+		}
+
+	}
+
+}
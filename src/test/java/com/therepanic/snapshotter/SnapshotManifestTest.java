@@ -0,0 +1,158 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotManifestTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testReplayRestoresOrder() {
+		File file = tempDir.resolve("manifest").toFile();
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			manifest.replay();
+			manifest.recordSave("a", new File("a.bin"));
+			manifest.recordSave("b", new File("b.bin"));
+			manifest.recordClear();
+			manifest.recordSave("c", new File("c.bin"));
+			manifest.recordSave("d", new File("d.bin"));
+			manifest.recordRemove("c");
+		}
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			LinkedHashMap<String, File> snapshots = manifest.replay();
+			assertEquals(1, snapshots.size());
+			assertEquals(new File("d.bin"), snapshots.get("d"));
+			assertEquals(6, manifest.getRecordCount());
+		}
+	}
+
+	@Test
+	void testTornTailIsDiscarded() throws IOException {
+		File file = tempDir.resolve("manifest").toFile();
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			manifest.replay();
+			manifest.recordSave("a", new File("a.bin"));
+		}
+		long intact = file.length();
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+		}
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			assertEquals(1, manifest.replay().size());
+			assertEquals(intact, file.length());
+			manifest.recordSave("b", new File("b.bin"));
+		}
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			assertEquals(2, manifest.replay().size());
+		}
+	}
+
+	@Test
+	void testCorruptionBeforeIntactRecordsFailsReplay() throws IOException {
+		File file = tempDir.resolve("manifest").toFile();
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			manifest.replay();
+			manifest.recordSave("a", new File("a.bin"));
+			manifest.recordSave("b", new File("b.bin"));
+		}
+		long length = file.length();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			// flips a payload byte of the first record
+			raf.seek(14);
+			raf.write(raf.read() ^ 0xFF);
+		}
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			IllegalStateException e = assertThrows(IllegalStateException.class, manifest::replay);
+			assertTrue(e.getMessage().contains("corrupt at offset 0"));
+		}
+		assertEquals(length, file.length());
+	}
+
+	@Test
+	void testAppendsGoThroughDurabilityPolicy() {
+		File file = tempDir.resolve("manifest").toFile();
+		List<Object> synced = new ArrayList<>();
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			manifest.setDurabilityPolicy(new DurabilityPolicy() {
+
+				@Override
+				public void afterWrite(FileChannel channel) {
+					synced.add(channel);
+				}
+
+				@Override
+				public void afterPublish(Path published) {
+					synced.add(published);
+				}
+
+			});
+			manifest.replay();
+			manifest.recordSave("a", new File("a.bin"));
+			manifest.sync();
+			manifest.recordRemove("a");
+			manifest.sync();
+		}
+		assertEquals(3, synced.size());
+		assertTrue(synced.get(0) instanceof FileChannel);
+		assertEquals(file.toPath(), synced.get(1));
+		assertSame(synced.get(0), synced.get(2));
+	}
+
+	@Test
+	void testCompaction() {
+		File file = tempDir.resolve("manifest").toFile();
+		try (SnapshotManifest manifest = new SnapshotManifest(file, 10)) {
+			LinkedHashMap<String, File> live = manifest.replay();
+			for (int i = 0; i < 20; i++) {
+				manifest.recordSave("name", new File("v" + i));
+				live.put("name", new File("v" + i));
+			}
+			assertTrue(manifest.needsCompaction(live.size()));
+			long before = file.length();
+			manifest.compact(live);
+			assertTrue(file.length() < before);
+			assertFalse(manifest.needsCompaction(live.size()));
+			manifest.recordSave("other", new File("other"));
+		}
+		try (SnapshotManifest manifest = new SnapshotManifest(file)) {
+			LinkedHashMap<String, File> snapshots = manifest.replay();
+			assertEquals(new File("v19"), snapshots.get("name"));
+			assertEquals(new File("other"), snapshots.get("other"));
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotSupportsTest {
+
+	@Snapshottable
+	static class Account {
+
+		String owner;
+
+		long balance;
+
+		Account() {
+		}
+
+		Account(String owner, long balance) {
+			this.owner = owner;
+			this.balance = balance;
+		}
+
+	}
+
+	static class Plain {
+
+		int value;
+
+	}
+
+	@Test
+	void testFindsGeneratedSupport() {
+		assertNotNull(SnapshotSupports.find(Account.class));
+		assertNull(SnapshotSupports.find(Plain.class));
+	}
+
+	@Test
+	void testSnapshotterUsesGeneratedSupport() {
+		Account account = new Account("ann", 100);
+		DefaultSnapshotter<Account> snapshotter = Snapshotter.of(account);
+		snapshotter.save();
+		account.balance = 50;
+
+		Map<String, String> differences = snapshotter.diff();
+		assertEquals("100 -> 50", differences.get("balance"));
+
+		assertTrue(snapshotter.restore());
+		assertEquals(100, account.balance);
+		assertEquals("ann", account.owner);
+	}
+
+}
@@ -25,7 +25,19 @@ import com.therepanic.snapshotter.strategy.KryoSnapshotStrategy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SnapshotTest {
 
@@ -50,6 +62,34 @@ class SnapshotTest {
 
 	}
 
+	static class ExtendedState extends DummyState {
+
+		static int counter;
+
+		private long version;
+
+		public ExtendedState() {
+		}
+
+		public ExtendedState(String data, long version) {
+			super(data);
+			this.version = version;
+		}
+
+	}
+
+	static class Document {
+
+		private String title;
+
+		private int[] counters = new int[3];
+
+		private List<DummyState> sections = new ArrayList<>();
+
+		private Map<String, DummyState> index = new HashMap<>();
+
+	}
+
 	private Kryo kryo;
 
 	@BeforeEach
@@ -76,4 +116,131 @@ class SnapshotTest {
 		assertEquals("initial", target.getData());
 	}
 
+	@Test
+	void testRestoreIncludesSuperclassFields() {
+		ExtendedState original = new ExtendedState("initial", 3);
+		ExtendedState target = new ExtendedState("empty", 0);
+		Snapshot<ExtendedState> snapshot = new Snapshot<>(original, new KryoSnapshotStrategy<>(kryo));
+		ExtendedState.counter = 5;
+		snapshot.restore(target);
+		assertEquals("initial", target.getData());
+		assertEquals(3, target.version);
+		assertEquals(5, ExtendedState.counter);
+	}
+
+	static class Tally extends AtomicInteger {
+
+		private String label;
+
+	}
+
+	@Test
+	void testRestoreStopsAtJdkSuperclass() {
+		Tally original = new Tally();
+		original.label = "saved";
+		original.set(4);
+		Tally target = new Tally();
+		target.set(9);
+		new Snapshot<>(original).restore(target);
+		assertEquals("saved", target.label);
+		assertEquals(9, target.get());
+	}
+
+	@Test
+	void testRestoreRefillsJdkContainers() {
+		List<String> target = new ArrayList<>();
+		target.add("stale");
+		List<String> saved = new ArrayList<>();
+		saved.add("saved");
+		new Snapshot<>(saved).restore(target);
+		assertEquals(saved, target);
+	}
+
+	@Test
+	void testRestoreInPlaceReusesNestedObjects() {
+		Document original = new Document();
+		original.title = "saved";
+		original.counters[1] = 7;
+		original.sections.add(new DummyState("first"));
+		original.sections.add(new DummyState("second"));
+		original.index.put("key", new DummyState("indexed"));
+		Snapshot<Document> snapshot = new Snapshot<>(original, new KryoSnapshotStrategy<>(kryo));
+
+		int[] counters = original.counters;
+		DummyState firstSection = original.sections.get(0);
+		DummyState indexed = original.index.get("key");
+		original.title = "changed";
+		original.counters[1] = 0;
+		firstSection.setData("changed");
+		original.sections.remove(1);
+		indexed.setData("changed");
+		original.index.put("other", new DummyState("other"));
+
+		for (int i = 0; i < 2; i++) {
+			snapshot.restore(original, RestoreMode.IN_PLACE);
+			assertEquals("saved", original.title);
+			assertSame(counters, original.counters);
+			assertEquals(7, original.counters[1]);
+			assertSame(firstSection, original.sections.get(0));
+			assertEquals("first", firstSection.getData());
+			assertEquals("second", original.sections.get(1).getData());
+			assertNotSame(snapshot.getState().sections.get(1), original.sections.get(1));
+			assertSame(indexed, original.index.get("key"));
+			assertEquals("indexed", indexed.getData());
+			assertEquals(1, original.index.size());
+			firstSection.setData("changed again");
+		}
+	}
+
+	@Test
+	void testRestoreInPlaceCopiesNewMapKeys() {
+		Map<List<String>, String> saved = new HashMap<>();
+		saved.put(new ArrayList<>(Collections.singletonList("key")), "value");
+		Snapshot<Map<List<String>, String>> snapshot = new Snapshot<>(saved);
+
+		Map<List<String>, String> target = new HashMap<>();
+		snapshot.restore(target, RestoreMode.IN_PLACE);
+		assertEquals(saved, target);
+		assertNotSame(saved.keySet().iterator().next(), target.keySet().iterator().next());
+	}
+
+	static class Registry {
+
+		private List<String> names = new ArrayList<>();
+
+		private List<String> fixed = Arrays.asList("a", "b");
+
+		private Map<String, String> settings = new HashMap<>();
+
+	}
+
+	@Test
+	void testRestoreInPlaceReplacesUnmodifiableContainers() {
+		Registry saved = new Registry();
+		saved.names.add("saved");
+		saved.fixed = new ArrayList<>(Arrays.asList("x", "y", "z"));
+		saved.settings.put("key", "value");
+		Snapshot<Registry> snapshot = new Snapshot<>(saved);
+
+		Registry target = new Registry();
+		target.names = Collections.unmodifiableList(new ArrayList<>(Collections.singletonList("live")));
+		target.fixed = Arrays.asList("a", "b");
+		target.settings = Collections.emptyMap();
+		snapshot.restore(target, RestoreMode.IN_PLACE);
+		assertEquals(Collections.singletonList("saved"), target.names);
+		assertEquals(Arrays.asList("x", "y", "z"), target.fixed);
+		assertEquals(Collections.singletonMap("key", "value"), target.settings);
+	}
+
+	@Test
+	void testRestoreInPlaceNamesTheReasonForRootReplacement() {
+		IllegalArgumentException unmodifiable = assertThrows(IllegalArgumentException.class,
+				() -> new Snapshot<>(Collections.unmodifiableList(new ArrayList<>(Collections.singletonList("a"))))
+					.restore(Collections.unmodifiableList(new ArrayList<>()), RestoreMode.IN_PLACE));
+		assertTrue(unmodifiable.getMessage().contains("does not support modification"));
+		IllegalArgumentException jdkState = assertThrows(IllegalArgumentException.class,
+				() -> new Snapshot<>(new Tally()).restore(new Tally(), RestoreMode.IN_PLACE));
+		assertTrue(jdkState.getMessage().contains("JDK superclass"));
+	}
+
 }
@@ -20,12 +20,18 @@
 
 package com.therepanic.snapshotter;
 
+import com.therepanic.snapshotter.storage.MemorySnapshotStorage;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Proxy;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -107,4 +113,108 @@ class SnapshotterSchedulerTest {
 		assertFalse(scheduler.isRunning());
 	}
 
+	@Test
+	void leavesEncodingToTheUnlockedSave() throws Exception {
+		Dummy obj = new Dummy();
+		AtomicBoolean storageCaptured = new AtomicBoolean();
+		CompletableFuture<Boolean> savedUnderLock = new CompletableFuture<>();
+		AtomicReference<Snapshotter<Dummy>> holder = new AtomicReference<>();
+		MemorySnapshotStorage<Dummy> storage = new MemorySnapshotStorage<Dummy>() {
+			@Override
+			public Snapshot<Dummy> capture(Dummy target, SnapshotStrategy<Dummy> strategy) {
+				storageCaptured.set(true);
+				return super.capture(target, strategy);
+			}
+
+			@Override
+			public void save(String name, Snapshot<Dummy> snapshot) {
+				super.save(name, snapshot);
+				savedUnderLock.complete(Thread.holdsLock(holder.get()));
+			}
+		};
+		Snapshotter<Dummy> snap = Snapshotter.of(obj, storage);
+		holder.set(snap);
+
+		SnapshotterScheduler<Dummy> scheduler = new SnapshotterScheduler<>(snap, Duration.ofSeconds(10), () -> true,
+				() -> "tick", Duration.ofMillis(0), new ConcurrentLinkedQueue<>());
+		scheduler.start();
+		try {
+			assertFalse(savedUnderLock.get(5, TimeUnit.SECONDS));
+			assertFalse(storageCaptured.get());
+		}
+		finally {
+			scheduler.close();
+		}
+	}
+
+	@Test
+	void fallsBackToLockedSaveForOtherSnapshotters() throws Exception {
+		CompletableFuture<Boolean> savedUnderLock = new CompletableFuture<>();
+		AtomicReference<Object> holder = new AtomicReference<>();
+		@SuppressWarnings("unchecked")
+		Snapshotter<Dummy> snap = (Snapshotter<Dummy>) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Snapshotter.class }, (proxy, method, args) -> {
+					if (method.getName().equals("save") && args != null && args.length == 1) {
+						savedUnderLock.complete(Thread.holdsLock(holder.get()));
+					}
+					return null;
+				});
+		holder.set(snap);
+
+		SnapshotterScheduler<Dummy> scheduler = new SnapshotterScheduler<>(snap, Duration.ofSeconds(10), () -> true,
+				() -> "tick", Duration.ofMillis(0), new ConcurrentLinkedQueue<>());
+		scheduler.start();
+		try {
+			assertTrue(savedUnderLock.get(5, TimeUnit.SECONDS));
+		}
+		finally {
+			scheduler.close();
+		}
+	}
+
+	@Test
+	void persistsOutsideSnapshotterLock() throws Exception {
+		Dummy obj = new Dummy();
+		CountDownLatch persisting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		MemorySnapshotStorage<Dummy> storage = new MemorySnapshotStorage<Dummy>() {
+			@Override
+			public void save(String name, Snapshot<Dummy> snapshot) {
+				persisting.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.save(name, snapshot);
+			}
+		};
+		Snapshotter<Dummy> snap = Snapshotter.of(obj, storage);
+
+		SnapshotterScheduler<Dummy> scheduler = new SnapshotterScheduler<>(snap, Duration.ofSeconds(10), () -> true,
+				() -> "tick", Duration.ofMillis(0), new ConcurrentLinkedQueue<>());
+
+		scheduler.start();
+		assertTrue(persisting.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Void> locked = CompletableFuture.runAsync(() -> {
+			synchronized (snap) {
+				obj.value = 1;
+			}
+		});
+		locked.get(5, TimeUnit.SECONDS);
+		// keeps the persist phase clearly longer than the capture
+		TimeUnit.MILLISECONDS.sleep(100);
+		release.countDown();
+		while (scheduler.getSaveCount() == 0) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		scheduler.close();
+
+		assertTrue(scheduler.getLastPersistDuration().compareTo(scheduler.getLastCaptureDuration()) > 0);
+		assertEquals(scheduler.getLastPersistDuration(), scheduler.getTotalPersistDuration());
+		snap.restore("tick");
+		assertEquals(0, obj.value);
+	}
+
 }
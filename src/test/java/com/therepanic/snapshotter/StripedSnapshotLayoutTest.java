@@ -0,0 +1,106 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.therepanic.snapshotter;
+
+import com.therepanic.snapshotter.storage.BytesFileSnapshotStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedSnapshotLayoutTest {
+
+	@TempDir
+	File tempDir;
+
+	static class DummyState {
+
+		private String data;
+
+		public DummyState() {
+		}
+
+		public DummyState(String data) {
+			this.data = data;
+		}
+
+	}
+
+	@Test
+	void spreadsNamesAcrossRootsAndNestedDirectories() {
+		List<File> roots = Arrays.asList(new File(tempDir, "disk-a"), new File(tempDir, "disk-b"));
+		StripedSnapshotLayout layout = new StripedSnapshotLayout(roots, 2);
+		Set<File> usedRoots = new HashSet<>();
+		for (int i = 0; i < 200; i++) {
+			File file = layout.resolve("snapshot-" + i);
+			File root = file.getParentFile().getParentFile().getParentFile();
+			assertTrue(roots.contains(root));
+			assertEquals(2, file.getParentFile().getName().length());
+			usedRoots.add(root);
+			assertEquals(file, layout.resolve("snapshot-" + i));
+		}
+		assertEquals(2, usedRoots.size());
+	}
+
+	@Test
+	void encodesNamesIntoSingleFileNames() {
+		StripedSnapshotLayout layout = new StripedSnapshotLayout(Collections.singletonList(tempDir), 0);
+		assertEquals(new File(tempDir, "a%2Fb+c"), layout.resolve("a/b c"));
+		char[] longName = new char[500];
+		Arrays.fill(longName, 'x');
+		assertEquals(200, layout.resolve(new String(longName)).getName().length());
+	}
+
+	@Test
+	void escapesDotSegmentsAndWildcards() {
+		StripedSnapshotLayout layout = new StripedSnapshotLayout(Collections.singletonList(tempDir), 0);
+		assertEquals(new File(tempDir, "%2E"), layout.resolve("."));
+		assertEquals(new File(tempDir, "%2E%2E"), layout.resolve(".."));
+		assertEquals(new File(tempDir, "a%2A"), layout.resolve("a*"));
+		assertEquals(new File(tempDir, "a.b"), layout.resolve("a.b"));
+	}
+
+	@Test
+	void fileStorageSavesAndLoadsThroughLayout() {
+		StripedSnapshotLayout layout = new StripedSnapshotLayout(
+				Arrays.asList(new File(tempDir, "disk-a"), new File(tempDir, "disk-b")));
+		BytesFileSnapshotStorage<DummyState> storage = new BytesFileSnapshotStorage<>(FileStorageOptions.defaults().layout(layout));
+		storage.save("first", new Snapshot<>(new DummyState("one")));
+		assertTrue(layout.resolve("first").isFile());
+		assertEquals("one", storage.load("first").getState().data);
+		storage.remove("first");
+		assertFalse(layout.resolve("first").exists());
+	}
+
+	@Test
+	void rejectsInvalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new StripedSnapshotLayout(Collections.emptyList()));
+		assertThrows(IllegalArgumentException.class,
+				() -> new StripedSnapshotLayout(Collections.singletonList(tempDir), 7));
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryDeltaTest {
+
+	@Test
+	void testSmallChangeProducesSmallDelta() {
+		byte[] base = new byte[4096];
+		new Random(42).nextBytes(base);
+		byte[] target = Arrays.copyOf(base, base.length + 3);
+		target[1000] ^= 1;
+		target[4096] = 7;
+		byte[] delta = BinaryDelta.diff(base, target);
+		assertTrue(delta.length < 64);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+	}
+
+	@Test
+	void testUnrelatedAndEmptyInputs() {
+		byte[] base = new byte[100];
+		byte[] target = new byte[37];
+		new Random(1).nextBytes(base);
+		new Random(2).nextBytes(target);
+		assertArrayEquals(target, BinaryDelta.apply(base, BinaryDelta.diff(base, target)));
+		assertArrayEquals(target, BinaryDelta.apply(new byte[0], BinaryDelta.diff(new byte[0], target)));
+		assertArrayEquals(new byte[0], BinaryDelta.apply(base, BinaryDelta.diff(base, new byte[0])));
+	}
+
+	@Test
+	void testShiftedContent() {
+		byte[] base = new byte[2048];
+		new Random(3).nextBytes(base);
+		byte[] target = new byte[base.length + 5];
+		System.arraycopy(base, 0, target, 5, base.length);
+		byte[] delta = BinaryDelta.diff(base, target);
+		assertTrue(delta.length < 32);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+	}
+
+	@Test
+	void testRejectsCorruptedDeltas() {
+		byte[] base = new byte[64];
+		// copy past the end of the base
+		assertThrows(IllegalStateException.class, () -> BinaryDelta.apply(base, new byte[] { 10, 0, 60, 10 }));
+		// insert longer than the remaining delta
+		assertThrows(IllegalStateException.class, () -> BinaryDelta.apply(base, new byte[] { 5, 1, 5, 1, 2 }));
+		// operations writing past the declared length
+		assertThrows(IllegalStateException.class, () -> BinaryDelta.apply(base, new byte[] { 2, 0, 0, 10 }));
+		// truncated and oversized lengths
+		assertThrows(IllegalStateException.class, () -> BinaryDelta.apply(base, new byte[] { 10, 0, (byte) 0x80 }));
+		assertThrows(IllegalStateException.class,
+				() -> BinaryDelta.apply(base, new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F }));
+		assertThrows(IllegalStateException.class, () -> BinaryDelta.apply(base,
+				new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1 }));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.storage.MemorySnapshotStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingSnapshotSerializerTest {
+
+	@Test
+	void testCodecRoundTrip() {
+		DeflaterSnapshotCodec codec = new DeflaterSnapshotCodec(Deflater.BEST_COMPRESSION);
+		byte[] random = new byte[100000];
+		new Random(42).nextBytes(random);
+		assertArrayEquals(random, codec.decompress(codec.compress(random)));
+		assertArrayEquals(new byte[0], codec.decompress(codec.compress(new byte[0])));
+	}
+
+	@Test
+	void testRejectsCorruptedInput() {
+		DeflaterSnapshotCodec codec = new DeflaterSnapshotCodec();
+		byte[] compressed = codec.compress(new byte[1000]);
+		assertThrows(IllegalStateException.class, () -> codec.decompress(new byte[2]));
+		assertThrows(IllegalStateException.class,
+				() -> codec.decompress(Arrays.copyOf(compressed, compressed.length / 2)));
+		byte[] oversized = compressed.clone();
+		oversized[0] = 0x7F;
+		assertThrows(IllegalStateException.class, () -> codec.decompress(oversized));
+
+		Deflater deflater = new Deflater();
+		deflater.setDictionary(new byte[] { 1, 2, 3 });
+		deflater.setInput(new byte[100]);
+		deflater.finish();
+		byte[] withDictionary = new byte[200];
+		int length = deflater.deflate(withDictionary, 4, withDictionary.length - 4) + 4;
+		deflater.end();
+		withDictionary[3] = 100;
+		assertThrows(IllegalStateException.class, () -> codec.decompress(Arrays.copyOf(withDictionary, length)));
+	}
+
+	@Test
+	void testRejectsLengthMismatchAndTrailingBytes() {
+		DeflaterSnapshotCodec codec = new DeflaterSnapshotCodec();
+		byte[] compressed = codec.compress(new byte[1000]);
+		byte[] understated = compressed.clone();
+		understated[2] = 0;
+		understated[3] = 100;
+		assertThrows(IllegalStateException.class, () -> codec.decompress(understated));
+		byte[] trailing = Arrays.copyOf(compressed, compressed.length + 3);
+		assertThrows(IllegalStateException.class, () -> codec.decompress(trailing));
+		assertEquals(1000, codec.decompress(compressed).length);
+	}
+
+	@Test
+	void testPoolOverflowIsReleased() throws InterruptedException {
+		DeflaterSnapshotCodec codec = new DeflaterSnapshotCodec(Deflater.BEST_SPEED, 1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					for (int j = 0; j < 100; j++) {
+						assertEquals(500, codec.decompress(codec.compress(new byte[500])).length);
+					}
+				}
+				catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		assertEquals(10, codec.decompress(codec.compress(new byte[10])).length);
+	}
+
+	@Test
+	void testInvalidLevel() {
+		assertThrows(IllegalArgumentException.class, () -> new DeflaterSnapshotCodec(42));
+		assertThrows(IllegalArgumentException.class, () -> new DeflaterSnapshotCodec(Deflater.BEST_SPEED, 0));
+	}
+
+	@Test
+	void testCompressedMemoryStorage() {
+		CompressingSnapshotSerializer<ArrayList> serializer = new CompressingSnapshotSerializer<>(
+				new KryoSnapshotSerializer<>(ArrayList.class));
+		MemorySnapshotStorage<ArrayList> storage = new MemorySnapshotStorage<>(serializer);
+		ArrayList<String> state = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			state.add("the same line of configuration text " + (i % 10));
+		}
+		storage.save("snapshot", new Snapshot<>(state));
+
+		assertEquals(state, storage.load("snapshot").getState());
+		assertTrue(serializer.getCompressionRatio() > 5.0);
+		assertTrue(serializer.getCompressedBytes() < serializer.getUncompressedBytes());
+	}
+
+}
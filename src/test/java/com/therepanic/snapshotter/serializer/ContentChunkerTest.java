@@ -0,0 +1,78 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentChunkerTest {
+
+	@Test
+	void testChunksReassembleAndRespectBounds() {
+		byte[] data = new byte[100_000];
+		new Random(7).nextBytes(data);
+		List<byte[]> chunks = new ContentChunker(1024).split(data);
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+		for (int i = 0; i < chunks.size(); i++) {
+			byte[] chunk = chunks.get(i);
+			assertTrue(chunk.length <= 4096);
+			if (i < chunks.size() - 1) {
+				assertTrue(chunk.length >= 256);
+			}
+			joined.write(chunk, 0, chunk.length);
+		}
+		assertArrayEquals(data, joined.toByteArray());
+		assertTrue(new ContentChunker().split(new byte[0]).isEmpty());
+	}
+
+	@Test
+	void testBoundariesResynchronizeAfterInsertion() {
+		byte[] data = new byte[50_000];
+		new Random(9).nextBytes(data);
+		byte[] shifted = new byte[data.length + 10];
+		System.arraycopy(data, 0, shifted, 10, data.length);
+		ContentChunker chunker = new ContentChunker(1024);
+		List<byte[]> original = chunker.split(data);
+		List<byte[]> modified = chunker.split(shifted);
+		int shared = 0;
+		for (byte[] chunk : modified) {
+			for (byte[] candidate : original) {
+				if (Arrays.equals(chunk, candidate)) {
+					shared++;
+					break;
+				}
+			}
+		}
+		assertTrue(shared >= original.size() - 2);
+	}
+
+	@Test
+	void testRejectsInvalidAverageSize() {
+		assertThrows(IllegalArgumentException.class, () -> new ContentChunker(1000));
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.serializer;
+
+import com.therepanic.snapshotter.SnapshotSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KryoSnapshotSerializerTest {
+
+	@Test
+	void testRoundTripWithType() {
+		SnapshotSerializer<ArrayList> serializer = new KryoSnapshotSerializer<>(ArrayList.class);
+		ArrayList<String> original = new ArrayList<>();
+		original.add("one");
+		assertEquals(original, serializer.deserialize(serializer.serialize(original)));
+	}
+
+	@Test
+	void testRoundTripWithoutType() {
+		SnapshotSerializer<List<Integer>> serializer = new KryoSnapshotSerializer<>();
+		List<Integer> original = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			original.add(i);
+		}
+		assertEquals(original, serializer.deserialize(serializer.serialize(original)));
+		assertEquals(original, serializer.deserialize(serializer.serialize(original)));
+	}
+
+}
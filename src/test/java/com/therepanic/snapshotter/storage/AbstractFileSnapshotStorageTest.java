@@ -22,7 +22,9 @@ package com.therepanic.snapshotter.storage;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.therepanic.snapshotter.AbstractFileSnapshotStorage;
+import com.therepanic.snapshotter.DurabilityPolicy;
 import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotManifest;
 import com.therepanic.snapshotter.strategy.KryoSnapshotStrategy;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,7 +32,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -78,6 +85,10 @@ abstract class AbstractFileSnapshotStorageTest {
 
 	protected abstract AbstractFileSnapshotStorage<DummyState> createStorage();
 
+	protected abstract AbstractFileSnapshotStorage<DummyState> createStorage(SnapshotManifest manifest);
+
+	protected abstract AbstractFileSnapshotStorage<DummyState> createStorage(DurabilityPolicy durabilityPolicy);
+
 	@BeforeEach
 	void setUp() {
 		Kryo newKryo = new Kryo();
@@ -103,6 +114,48 @@ abstract class AbstractFileSnapshotStorageTest {
 		assertEquals("data", loaded.getState().getData());
 	}
 
+	@Test
+	void testCaptureEncodesWithoutCloning() {
+		DummyState state = new DummyState("live");
+		Snapshot<DummyState> snapshot = storage.capture(state, new KryoSnapshotStrategy<DummyState>(kryo) {
+
+			@Override
+			public DummyState deepClone(DummyState obj) {
+				throw new AssertionError("strategy should not be used");
+			}
+
+		});
+		String filePath = tempDir.resolve("captured").toString();
+		storage.save(filePath, snapshot);
+
+		assertEquals("live", snapshot.getState().getData());
+		assertNotSame(state, snapshot.getState());
+		assertEquals("live", storage.load(filePath).getState().getData());
+	}
+
+	@Test
+	void testCaptureHonoursCustomStrategy() {
+		DummyState state = new DummyState("live");
+		Snapshot<DummyState> snapshot = storage.capture(state, obj -> new DummyState(obj.getData() + "-copied"));
+		String filePath = tempDir.resolve("custom").toString();
+		storage.save(filePath, snapshot);
+
+		assertEquals("live-copied", storage.load(filePath).getState().getData());
+	}
+
+	@Test
+	void testLoadLargeSnapshotThroughMapping() {
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() <= AbstractFileSnapshotStorage.MAPPED_LOAD_THRESHOLD) {
+			builder.append("large snapshot payload ");
+		}
+		String filePath = tempDir.resolve("large").toString();
+		storage.save(filePath, new Snapshot<>(new DummyState(builder.toString())));
+
+		assertTrue(new File(filePath).length() >= AbstractFileSnapshotStorage.MAPPED_LOAD_THRESHOLD);
+		assertEquals(builder.toString(), storage.load(filePath).getState().getData());
+	}
+
 	@Test
 	void testLoadLastEntry() {
 		String firstPath = tempDir.resolve("first").toString();
@@ -150,4 +203,108 @@ abstract class AbstractFileSnapshotStorageTest {
 		assertFalse(new File(path2).exists());
 	}
 
+	@Test
+	void testManifestSurvivesRestart() {
+		File manifestFile = tempDir.resolve("manifest").toFile();
+		String first = tempDir.resolve("first").toString();
+		String second = tempDir.resolve("second").toString();
+		String third = tempDir.resolve("third").toString();
+		try (SnapshotManifest manifest = new SnapshotManifest(manifestFile)) {
+			AbstractFileSnapshotStorage<DummyState> persistent = createStorage(manifest);
+			persistent.save(first, new Snapshot<>(new DummyState("1")));
+			persistent.save(second, new Snapshot<>(new DummyState("2")));
+			persistent.save(third, new Snapshot<>(new DummyState("3")));
+			persistent.remove(third);
+		}
+
+		try (SnapshotManifest manifest = new SnapshotManifest(manifestFile)) {
+			AbstractFileSnapshotStorage<DummyState> restarted = createStorage(manifest);
+			assertTrue(restarted.hasSnapshot(first));
+			assertFalse(restarted.hasSnapshot(third));
+			assertEquals("2", restarted.loadLastEntry().getValue().getState().getData());
+			restarted.clear();
+		}
+
+		try (SnapshotManifest manifest = new SnapshotManifest(manifestFile)) {
+			assertNull(createStorage(manifest).loadLastEntry());
+		}
+	}
+
+	@Test
+	void testSaveReplacesAtomicallyWithDurability() {
+		for (DurabilityPolicy policy : new DurabilityPolicy[] { DurabilityPolicy.syncEachSave(),
+				DurabilityPolicy.periodic(Duration.ofMillis(1)) }) {
+			AbstractFileSnapshotStorage<DummyState> durable = createStorage(policy);
+			String filePath = tempDir.resolve("durable").toString();
+			durable.save(filePath, new Snapshot<>(new DummyState("first")));
+			durable.save(filePath, durable.capture(new DummyState("second"), null));
+			assertEquals("second", durable.load(filePath).getState().getData());
+			durable.clear();
+		}
+		assertEquals(0, tempDir.toFile().listFiles().length);
+	}
+
+	@Test
+	void testFailedSaveRemovesTempFileAndKeepsPrevious() {
+		AbstractFileSnapshotStorage<DummyState> failing = createStorage(channel -> {
+			throw new IllegalStateException("disk full");
+		});
+		String filePath = tempDir.resolve("kept").toString();
+		storage.save(filePath, new Snapshot<>(new DummyState("previous")));
+		assertThrows(IllegalStateException.class,
+				() -> failing.save(filePath, new Snapshot<>(new DummyState("lost"))));
+		assertEquals(1, tempDir.toFile().listFiles().length);
+		assertEquals("previous", storage.load(filePath).getState().getData());
+	}
+
+	@Test
+	void testPublishesTargetAfterRename() {
+		List<Path> published = new ArrayList<>();
+		AbstractFileSnapshotStorage<DummyState> durable = createStorage(new DurabilityPolicy() {
+
+			@Override
+			public void afterWrite(FileChannel channel) {
+			}
+
+			@Override
+			public void afterPublish(Path file) {
+				assertTrue(file.toFile().isFile());
+				published.add(file);
+			}
+
+		});
+		Path filePath = tempDir.resolve("published");
+		durable.save(filePath.toString(), new Snapshot<>(new DummyState("visible")));
+		assertEquals(Collections.singletonList(filePath), published);
+	}
+
+	@Test
+	void testConcurrentSavesKeepIndexConsistent() throws InterruptedException {
+		int threads = 4;
+		int perThread = 50;
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			workers.add(new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					String filePath = tempDir.resolve("concurrent-" + id + "-" + i).toString();
+					storage.save(filePath, new Snapshot<>(new DummyState(id + "-" + i)));
+					assertTrue(storage.hasSnapshot(filePath));
+				}
+			}));
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < perThread; i++) {
+				String filePath = tempDir.resolve("concurrent-" + t + "-" + i).toString();
+				assertEquals(t + "-" + i, storage.load(filePath).getState().getData());
+			}
+		}
+	}
+
 }
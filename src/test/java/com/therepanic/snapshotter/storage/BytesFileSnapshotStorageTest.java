@@ -21,6 +21,9 @@
 package com.therepanic.snapshotter.storage;
 
 import com.therepanic.snapshotter.AbstractFileSnapshotStorage;
+import com.therepanic.snapshotter.DurabilityPolicy;
+import com.therepanic.snapshotter.FileStorageOptions;
+import com.therepanic.snapshotter.SnapshotManifest;
 
 class BytesFileSnapshotStorageTest extends AbstractFileSnapshotStorageTest {
 
@@ -29,4 +32,14 @@ class BytesFileSnapshotStorageTest extends AbstractFileSnapshotStorageTest {
 		return new BytesFileSnapshotStorage<>();
 	}
 
+	@Override
+	protected AbstractFileSnapshotStorage<DummyState> createStorage(SnapshotManifest manifest) {
+		return new BytesFileSnapshotStorage<>(FileStorageOptions.defaults().manifest(manifest));
+	}
+
+	@Override
+	protected AbstractFileSnapshotStorage<DummyState> createStorage(DurabilityPolicy durabilityPolicy) {
+		return new BytesFileSnapshotStorage<>(kryo, FileStorageOptions.defaults().durabilityPolicy(durabilityPolicy));
+	}
+
 }
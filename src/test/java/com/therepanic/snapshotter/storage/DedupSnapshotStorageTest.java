@@ -0,0 +1,142 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.ContentChunker;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedupSnapshotStorageTest {
+
+	static class DummyState {
+
+		private List<String> items = new ArrayList<>();
+
+		public DummyState() {
+		}
+
+		public DummyState(int size, String suffix) {
+			for (int i = 0; i < size; i++) {
+				this.items.add("item-" + i + "-" + (i * 7919 % 1000));
+			}
+			this.items.add(suffix);
+		}
+
+		public List<String> getItems() {
+			return items;
+		}
+
+	}
+
+	@TempDir
+	File tempDir;
+
+	private DedupSnapshotStorage<DummyState> storage;
+
+	@BeforeEach
+	void setUp() {
+		this.storage = new DedupSnapshotStorage<>(new KryoSnapshotSerializer<>(DummyState.class),
+				new MemoryChunkStore(), new ContentChunker(256));
+	}
+
+	@Test
+	void testNearlyIdenticalSnapshotsShareChunks() {
+		for (int i = 0; i < 10; i++) {
+			storage.save("snapshot-" + i, storage.capture(new DummyState(2000, "v" + i), null));
+		}
+		assertTrue(storage.getChunkStore().getStoredBytes() * 5 < storage.getLogicalBytes());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("v" + i, storage.load("snapshot-" + i).getState().getItems().get(2000));
+		}
+		assertEquals("snapshot-9", storage.loadLastEntry().getKey());
+	}
+
+	@Test
+	void testRemoveAndClearReleaseChunks() {
+		storage.save("first", new Snapshot<>(new DummyState(500, "a")));
+		long single = storage.getChunkStore().getStoredBytes();
+		storage.save("second", new Snapshot<>(new DummyState(500, "b")));
+		storage.remove("first");
+		assertEquals("b", storage.load("second").getState().getItems().get(500));
+		assertTrue(storage.getChunkStore().getStoredBytes() <= single + 512);
+		storage.save("second", new Snapshot<>(new DummyState(500, "c")));
+		assertEquals("c", storage.load("second").getState().getItems().get(500));
+		storage.clear();
+		assertEquals(0, storage.getChunkStore().getChunkCount());
+		assertEquals(0, storage.getChunkStore().getStoredBytes());
+		assertNull(storage.load("second"));
+	}
+
+	@Test
+	void testFileChunkStore() {
+		FileChunkStore chunkStore = new FileChunkStore(new File(tempDir, "chunks"));
+		storage = new DedupSnapshotStorage<>(new KryoSnapshotSerializer<>(DummyState.class), chunkStore);
+		storage.save("first", new Snapshot<>(new DummyState(500, "a")));
+		storage.save("second", new Snapshot<>(new DummyState(500, "b")));
+		assertEquals("a", storage.load("first").getState().getItems().get(500));
+		storage.clear();
+		assertEquals(0, chunkStore.getChunkCount());
+		assertEquals(0, chunkStore.getStoredBytes());
+	}
+
+	@Test
+	void testFileChunkStoreRewritesTornChunks() throws Exception {
+		File directory = new File(tempDir, "chunks");
+		FileChunkStore chunkStore = new FileChunkStore(directory);
+		byte[] data = "chunk payload".getBytes(StandardCharsets.UTF_8);
+		String hash = ChunkHashes.sha256(data);
+		File chunk = new File(new File(directory, hash.substring(0, 2)), hash);
+		chunk.getParentFile().mkdirs();
+		Files.write(chunk.toPath(), Arrays.copyOf(data, 4));
+		assertTrue(chunkStore.retain(hash, data));
+		assertArrayEquals(data, chunkStore.get(hash));
+		assertEquals(1, chunk.getParentFile().list().length);
+	}
+
+	@Test
+	void testFileChunkStoreCollectsOrphansOnOpen() {
+		File directory = new File(tempDir, "chunks");
+		FileChunkStore chunkStore = new FileChunkStore(directory);
+		byte[] data = "orphan".getBytes(StandardCharsets.UTF_8);
+		String hash = ChunkHashes.sha256(data);
+		chunkStore.retain(hash, data);
+		File unrelated = new File(directory, "notes.txt");
+		assertDoesNotThrow(unrelated::createNewFile);
+
+		FileChunkStore reopened = new FileChunkStore(directory);
+		assertNull(reopened.get(hash));
+		assertFalse(new File(directory, hash.substring(0, 2)).exists());
+		assertTrue(unrelated.isFile());
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSnapshotStorageTest {
+
+	static class DummyState {
+
+		private List<String> items = new ArrayList<>();
+
+		public DummyState() {
+		}
+
+		public DummyState(int size, String suffix) {
+			for (int i = 0; i < size; i++) {
+				this.items.add("item-" + i);
+			}
+			this.items.add(suffix);
+		}
+
+		public List<String> getItems() {
+			return items;
+		}
+
+	}
+
+	private DeltaSnapshotStorage<DummyState> storage;
+
+	@BeforeEach
+	void setUp() {
+		this.storage = new DeltaSnapshotStorage<>(new KryoSnapshotSerializer<>(DummyState.class), 4);
+	}
+
+	@Test
+	void testDeltasAreSmallerThanKeyframes() {
+		storage.save("first", storage.capture(new DummyState(200, "a"), null));
+		long keyframeBytes = storage.getStoredBytes();
+		storage.save("second", storage.capture(new DummyState(200, "b"), null));
+		assertTrue(storage.getStoredBytes() - keyframeBytes < keyframeBytes / 10);
+		assertEquals("a", storage.load("first").getState().getItems().get(200));
+		assertEquals("b", storage.load("second").getState().getItems().get(200));
+	}
+
+	@Test
+	void testKeyframeEveryInterval() {
+		for (int i = 0; i < 10; i++) {
+			storage.save("snapshot-" + i, new Snapshot<>(new DummyState(50, "v" + i)));
+		}
+		assertEquals(3, storage.getKeyframeCount());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("v" + i, storage.load("snapshot-" + i).getState().getItems().get(50));
+		}
+		assertEquals("snapshot-9", storage.loadLastEntry().getKey());
+	}
+
+	@Test
+	void testKeyframeWhenChainGrowsTooLarge() {
+		storage = new DeltaSnapshotStorage<>(new KryoSnapshotSerializer<>(DummyState.class), 100, 0.5);
+		storage.save("small", new Snapshot<>(new DummyState(1, "x")));
+		storage.save("large", new Snapshot<>(new DummyState(100, "y")));
+		storage.save("next", new Snapshot<>(new DummyState(100, "z")));
+		assertEquals(2, storage.getKeyframeCount());
+		assertEquals("z", storage.load("next").getState().getItems().get(100));
+	}
+
+	@Test
+	void testRemoveRelinksChain() {
+		for (int i = 0; i < 6; i++) {
+			storage.save("snapshot-" + i, new Snapshot<>(new DummyState(50, "v" + i)));
+		}
+		storage.remove("snapshot-0");
+		storage.remove("snapshot-2");
+		storage.remove("snapshot-5");
+		assertFalse(storage.hasSnapshot("snapshot-2"));
+		for (int i : new int[] { 1, 3, 4 }) {
+			assertEquals("v" + i, storage.load("snapshot-" + i).getState().getItems().get(50));
+		}
+		assertEquals("snapshot-4", storage.loadLastEntry().getKey());
+		storage.save("snapshot-6", new Snapshot<>(new DummyState(50, "v6")));
+		assertEquals("v6", storage.load("snapshot-6").getState().getItems().get(50));
+	}
+
+	@Test
+	void testOverwriteMovesToEndAndClear() {
+		storage.save("first", new Snapshot<>(new DummyState(10, "a")));
+		storage.save("second", new Snapshot<>(new DummyState(10, "b")));
+		storage.save("first", new Snapshot<>(new DummyState(10, "c")));
+		assertEquals("first", storage.loadLastEntry().getKey());
+		assertEquals("b", storage.load("second").getState().getItems().get(10));
+		assertEquals("c", storage.load("first").getState().getItems().get(10));
+		storage.clear();
+		assertNull(storage.loadLastEntry());
+		assertEquals(0, storage.getStoredBytes());
+	}
+
+}
@@ -20,7 +20,20 @@
 
 package com.therepanic.snapshotter.storage;
 
+import com.google.gson.JsonSyntaxException;
 import com.therepanic.snapshotter.AbstractFileSnapshotStorage;
+import com.therepanic.snapshotter.DurabilityPolicy;
+import com.therepanic.snapshotter.FileStorageOptions;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.SnapshotManifest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class JsonFileSnapshotStorageTest extends AbstractFileSnapshotStorageTest {
 
@@ -29,4 +42,43 @@ class JsonFileSnapshotStorageTest extends AbstractFileSnapshotStorageTest {
 		return new JsonFileSnapshotStorage<>(DummyState.class);
 	}
 
+	@Override
+	protected AbstractFileSnapshotStorage<DummyState> createStorage(SnapshotManifest manifest) {
+		return new JsonFileSnapshotStorage<>(DummyState.class, FileStorageOptions.defaults().manifest(manifest));
+	}
+
+	@Override
+	protected AbstractFileSnapshotStorage<DummyState> createStorage(DurabilityPolicy durabilityPolicy) {
+		return new JsonFileSnapshotStorage<>(DummyState.class,
+				FileStorageOptions.defaults().durabilityPolicy(durabilityPolicy));
+	}
+
+	static class ExtendedState extends DummyState {
+
+		private String extra;
+
+		ExtendedState(String data, String extra) {
+			super(data);
+			this.extra = extra;
+		}
+
+	}
+
+	@Test
+	void testBufferedAndStreamedEncodingMatch() throws IOException {
+		JsonFileSnapshotStorage<DummyState> json = new JsonFileSnapshotStorage<>(DummyState.class);
+		Snapshot<DummyState> snapshot = new Snapshot<>(new ExtendedState("data", "extra"));
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		json.encode(snapshot, streamed);
+		assertArrayEquals(json.encode(snapshot), streamed.toByteArray());
+	}
+
+	@Test
+	void testBufferedAndMappedDecodingRejectTrailingData() {
+		JsonFileSnapshotStorage<DummyState> json = new JsonFileSnapshotStorage<>(DummyState.class);
+		byte[] data = "{\"data\":\"value\"} {}".getBytes(StandardCharsets.UTF_8);
+		assertThrows(JsonSyntaxException.class, () -> json.decode(data));
+		assertThrows(JsonSyntaxException.class, () -> json.decode(ByteBuffer.wrap(data)));
+	}
+
 }
@@ -0,0 +1,224 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.GroupCommitDurabilityPolicy;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSnapshotStorageTest {
+
+	static class DummyState {
+
+		private String data;
+
+		public DummyState() {
+		}
+
+		public DummyState(String data) {
+			this.data = data;
+		}
+
+		public String getData() {
+			return data;
+		}
+
+	}
+
+	@TempDir
+	File tempDir;
+
+	private LogSnapshotStorage<DummyState> storage;
+
+	@BeforeEach
+	void setUp() {
+		this.storage = open();
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.storage.close();
+	}
+
+	private LogSnapshotStorage<DummyState> open() {
+		return new LogSnapshotStorage<>(new File(tempDir, "log"), new KryoSnapshotSerializer<>(DummyState.class), 256,
+				0.5);
+	}
+
+	@Test
+	void testSaveLoadAndRolling() {
+		for (int i = 0; i < 20; i++) {
+			storage.save("snapshot-" + i, storage.capture(new DummyState("value-" + i), null));
+		}
+		assertTrue(storage.getSegmentCount() > 1);
+		assertEquals("value-7", storage.load("snapshot-7").getState().getData());
+		assertEquals("snapshot-19", storage.loadLastEntry().getKey());
+		assertNull(storage.load("missing"));
+	}
+
+	@Test
+	void testCaptureHonoursCustomStrategy() {
+		DummyState state = new DummyState("live");
+		storage.save("snapshot", storage.capture(state, obj -> new DummyState(obj.getData() + "-copied")));
+		assertEquals("live-copied", storage.load("snapshot").getState().getData());
+	}
+
+	@Test
+	void testRecoveryAfterRestart() throws IOException {
+		storage.save("first", new Snapshot<>(new DummyState("1")));
+		storage.save("second", new Snapshot<>(new DummyState("2")));
+		storage.save("first", new Snapshot<>(new DummyState("3")));
+		storage.save("third", new Snapshot<>(new DummyState("4")));
+		storage.remove("third");
+		storage.close();
+		File[] segments = new File(tempDir, "log").listFiles();
+		File last = segments[0];
+		for (File segment : segments) {
+			if (segment.getName().compareTo(last.getName()) > 0) {
+				last = segment;
+			}
+		}
+		try (FileOutputStream out = new FileOutputStream(last, true)) {
+			out.write(new byte[] { 0, 0, 0, 90, 1, 2 });
+		}
+
+		storage = open();
+		assertEquals("3", storage.load("first").getState().getData());
+		assertEquals("2", storage.load("second").getState().getData());
+		assertFalse(storage.hasSnapshot("third"));
+		assertEquals("first", storage.loadLastEntry().getKey());
+		storage.save("fourth", new Snapshot<>(new DummyState("5")));
+		assertEquals("5", storage.load("fourth").getState().getData());
+	}
+
+	@Test
+	void testCompactionReclaimsStaleRecords() {
+		for (int i = 0; i < 50; i++) {
+			storage.save("hot", new Snapshot<>(new DummyState("value-" + i)));
+		}
+		storage.save("cold", new Snapshot<>(new DummyState("cold")));
+		storage.compact();
+		assertTrue(storage.getTotalBytes() < storage.getLiveBytes() * 4);
+		assertEquals("value-49", storage.load("hot").getState().getData());
+		assertEquals("cold", storage.load("cold").getState().getData());
+		storage.close();
+
+		storage = open();
+		assertEquals("value-49", storage.load("hot").getState().getData());
+		assertEquals("cold", storage.loadLastEntry().getValue().getState().getData());
+	}
+
+	@Test
+	void testRemovedNamesStayRemovedAfterCompactionAndRestart() {
+		for (int i = 0; i < 10; i++) {
+			storage.save("name-" + i, new Snapshot<>(new DummyState("value-" + i)));
+		}
+		for (int i = 0; i < 10; i += 2) {
+			storage.remove("name-" + i);
+		}
+		storage.compact();
+		storage.close();
+		storage = open();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i % 2 == 1, storage.hasSnapshot("name-" + i));
+		}
+		storage.clear();
+		assertNull(storage.loadLastEntry());
+		assertEquals(1, storage.getSegmentCount());
+	}
+
+	@Test
+	void testConcurrentSavesShareGroupCommit() throws InterruptedException {
+		storage.close();
+		GroupCommitDurabilityPolicy policy = new GroupCommitDurabilityPolicy(Duration.ofMillis(20));
+		storage = new LogSnapshotStorage<>(new File(tempDir, "grouped"), new KryoSnapshotSerializer<>(DummyState.class),
+				policy);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int id = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 5; i++) {
+					storage.save("thread-" + id + "-" + i, storage.capture(new DummyState("value-" + i), null));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// every save plus publishing the first segment
+		assertEquals(21, policy.getWriteCount());
+		assertTrue(policy.getSyncCount() <= policy.getBatchCount());
+		assertEquals("value-4", storage.load("thread-3-4").getState().getData());
+	}
+
+	@Test
+	void testIgnoresStraySegmentLikeFiles() throws IOException {
+		storage.save("kept", new Snapshot<>(new DummyState("value")));
+		storage.close();
+		new File(new File(tempDir, "log"), "segment-copy.log").createNewFile();
+		storage = open();
+		assertEquals("value", storage.load("kept").getState().getData());
+	}
+
+	@Test
+	void testCompactionKeepsUpdatesMadeWhileCopying() throws InterruptedException {
+		for (int i = 0; i < 20; i++) {
+			storage.save("name-" + i, new Snapshot<>(new DummyState("old-" + i)));
+		}
+		for (int i = 0; i < 20; i += 2) {
+			storage.remove("name-" + i);
+		}
+		Thread writer = new Thread(() -> {
+			for (int i = 1; i < 20; i += 2) {
+				storage.save("name-" + i, new Snapshot<>(new DummyState("new-" + i)));
+			}
+		});
+		writer.start();
+		storage.compact();
+		writer.join();
+		storage.compact();
+		storage.close();
+		storage = open();
+		for (int i = 0; i < 20; i++) {
+			if (i % 2 == 0) {
+				assertFalse(storage.hasSnapshot("name-" + i));
+			}
+			else {
+				assertEquals("new-" + i, storage.load("name-" + i).getState().getData());
+			}
+		}
+	}
+
+}
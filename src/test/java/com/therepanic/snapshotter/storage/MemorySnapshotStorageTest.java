@@ -21,7 +21,9 @@
 package com.therepanic.snapshotter.storage;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.therepanic.snapshotter.EncodedSnapshot;
 import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
 import com.therepanic.snapshotter.strategy.KryoSnapshotStrategy;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -46,6 +48,10 @@ class MemorySnapshotStorageTest {
 			return data;
 		}
 
+		public void setData(String data) {
+			this.data = data;
+		}
+
 	}
 
 	private MemorySnapshotStorage<DummyState> storage;
@@ -98,4 +104,52 @@ class MemorySnapshotStorageTest {
 		assertNull(storage.loadLastEntry());
 	}
 
+	@Test
+	void testSerializedCaptureAndRestore() {
+		MemorySnapshotStorage<DummyState> serialized = new MemorySnapshotStorage<>(
+				new KryoSnapshotSerializer<>(DummyState.class));
+		DummyState state = new DummyState("data");
+		serialized.save("snapshot", serialized.capture(state, new KryoSnapshotStrategy<DummyState>(kryo) {
+
+			@Override
+			public DummyState deepClone(DummyState obj) {
+				throw new AssertionError("strategy should not be used");
+			}
+
+		}));
+		state.setData("modified");
+
+		Snapshot<DummyState> loaded = serialized.load("snapshot");
+		assertTrue(loaded instanceof EncodedSnapshot);
+		assertEquals("data", loaded.getState().getData());
+		loaded.restore(state);
+		assertEquals("data", state.getData());
+	}
+
+	@Test
+	void testSerializedCaptureHonoursCustomStrategy() {
+		MemorySnapshotStorage<DummyState> serialized = new MemorySnapshotStorage<>(
+				new KryoSnapshotSerializer<>(DummyState.class));
+		DummyState state = new DummyState("live");
+		serialized.save("snapshot", serialized.capture(state, obj -> new DummyState(obj.getData() + "-copied")));
+		state.setData("modified");
+
+		assertEquals("live-copied", serialized.load("snapshot").getState().getData());
+	}
+
+	@Test
+	void testSerializedSaveOfMaterializedSnapshot() {
+		MemorySnapshotStorage<DummyState> serialized = new MemorySnapshotStorage<>(
+				new KryoSnapshotSerializer<>(DummyState.class), true);
+		serialized.save("snapshot", new Snapshot<>(new DummyState("value")));
+
+		Snapshot<DummyState> loaded = serialized.load("snapshot");
+		assertTrue(loaded instanceof EncodedSnapshot);
+		assertSame(loaded.getState(), loaded.getState());
+		DummyState target = new DummyState("other");
+		loaded.restore(target);
+		target.setData("changed");
+		assertEquals("value", loaded.getState().getData());
+	}
+
 }
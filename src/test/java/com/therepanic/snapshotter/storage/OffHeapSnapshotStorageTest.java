@@ -0,0 +1,152 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapSnapshotStorageTest {
+
+	static class DummyState {
+
+		private String data;
+
+		public DummyState() {
+		}
+
+		public DummyState(String data) {
+			this.data = data;
+		}
+
+		public String getData() {
+			return data;
+		}
+
+	}
+
+	private OffHeapSnapshotStorage<DummyState> storage;
+
+	@BeforeEach
+	void setUp() {
+		this.storage = new OffHeapSnapshotStorage<>(new KryoSnapshotSerializer<>(DummyState.class), 1024, 2);
+	}
+
+	@Test
+	void testSaveAndLoad() {
+		storage.save("snapshot", storage.capture(new DummyState("data"), null));
+		assertEquals("data", storage.load("snapshot").getState().getData());
+		assertNull(storage.load("missing"));
+		assertTrue(storage.getUsedBytes() > 0);
+	}
+
+	@Test
+	void testCaptureHonoursCustomStrategy() {
+		DummyState state = new DummyState("live");
+		storage.save("snapshot", storage.capture(state, obj -> new DummyState(obj.getData() + "-copied")));
+		assertEquals("live-copied", storage.load("snapshot").getState().getData());
+	}
+
+	@Test
+	void testOverwriteAndRemoveReleaseMemory() {
+		storage.save("snapshot", new Snapshot<>(new DummyState("first")));
+		storage.save("snapshot", new Snapshot<>(new DummyState("second")));
+		assertEquals("second", storage.load("snapshot").getState().getData());
+		storage.remove("snapshot");
+		assertFalse(storage.hasSnapshot("snapshot"));
+		assertEquals(0, storage.getUsedBytes());
+		assertEquals(0.0, storage.getFragmentation(), 0.0);
+	}
+
+	@Test
+	void testFailedOverwriteKeepsPreviousSnapshot() {
+		OffHeapSnapshotStorage<DummyState> small = new OffHeapSnapshotStorage<>(
+				new KryoSnapshotSerializer<>(DummyState.class), 600, 1);
+		char[] value = new char[400];
+		small.save("snapshot", new Snapshot<>(new DummyState(new String(value))));
+		Arrays.fill(value, 'x');
+		assertThrows(IllegalStateException.class,
+				() -> small.save("snapshot", new Snapshot<>(new DummyState(new String(value)))));
+		assertEquals(new String(new char[400]), small.load("snapshot").getState().getData());
+	}
+
+	@Test
+	void testLoadLastEntryAndClear() {
+		storage.save("first", new Snapshot<>(new DummyState("one")));
+		storage.save("second", new Snapshot<>(new DummyState("two")));
+		assertEquals("two", storage.loadLastEntry().getValue().getState().getData());
+		storage.clear();
+		assertNull(storage.loadLastEntry());
+		assertEquals(0, storage.getUsedBytes());
+	}
+
+	@Test
+	void testFragmentationAndCapacity() {
+		assertEquals(2048, storage.getCapacity());
+		for (int i = 0; i < 20; i++) {
+			storage.save("snapshot" + i, new Snapshot<>(new DummyState("value" + i)));
+		}
+		for (int i = 0; i < 20; i += 2) {
+			storage.remove("snapshot" + i);
+		}
+		assertTrue(storage.getFragmentation() > 0.0);
+		assertEquals("value7", storage.load("snapshot7").getState().getData());
+	}
+
+	@Test
+	void testFullArena() {
+		assertThrows(IllegalStateException.class,
+				() -> storage.save("large", new Snapshot<>(new DummyState(new String(new char[3000])))));
+		OffHeapArena arena = new OffHeapArena(16, 1);
+		arena.allocate(16);
+		assertThrows(IllegalStateException.class, () -> arena.allocate(1));
+	}
+
+	@Test
+	void testSnapshotLargerThanSlabGetsDedicatedBlock() {
+		OffHeapSnapshotStorage<DummyState> slabs = new OffHeapSnapshotStorage<>(
+				new KryoSnapshotSerializer<>(DummyState.class), 1024, 3);
+		String large = new String(new char[1500]);
+		slabs.save("large", new Snapshot<>(new DummyState(large)));
+		assertEquals(large, slabs.load("large").getState().getData());
+		assertTrue(slabs.getUsedBytes() > 1024);
+		slabs.save("small", new Snapshot<>(new DummyState("small")));
+		slabs.remove("large");
+		assertEquals("small", slabs.load("small").getState().getData());
+		assertTrue(slabs.getUsedBytes() < 1024);
+		slabs.close();
+	}
+
+	@Test
+	void testCloseReleasesArena() {
+		storage.save("snapshot", new Snapshot<>(new DummyState("data")));
+		storage.close();
+		assertEquals(0, storage.getUsedBytes());
+		assertFalse(storage.hasSnapshot("snapshot"));
+		assertThrows(IllegalStateException.class, () -> storage.save("again", new Snapshot<>(new DummyState("x"))));
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.storage;
+
+import com.therepanic.snapshotter.RestoreMode;
+import com.therepanic.snapshotter.Snapshot;
+import com.therepanic.snapshotter.serializer.KryoSnapshotSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedSnapshotStorageTest {
+
+	private final MemoryChunkStore chunkStore = new MemoryChunkStore();
+
+	private PartitionedSnapshotStorage<Map<String, Integer>> storage;
+
+	@BeforeEach
+	void setUp() {
+		this.storage = new PartitionedSnapshotStorage<>(new KryoSnapshotSerializer<>(), this.chunkStore, 100);
+	}
+
+	private static Map<String, Integer> entries(Map<String, Integer> map, int size) {
+		for (int i = 0; i < size; i++) {
+			map.put("key-" + i, i);
+		}
+		return map;
+	}
+
+	@Test
+	void testOnlyChangedPartitionsAreWritten() {
+		Map<String, Integer> target = entries(new HashMap<>(), 1000);
+		storage.save("first", storage.capture(target, null));
+		assertEquals(16, storage.getWrittenPartitionCount());
+		target.put("key-500", -1);
+		storage.save("second", storage.capture(target, null));
+		assertEquals(17, storage.getWrittenPartitionCount());
+		assertEquals(15, storage.getReusedPartitionCount());
+		Map<String, Integer> first = storage.load("first").getState();
+		assertEquals(HashMap.class, first.getClass());
+		assertEquals(1000, first.size());
+		assertEquals(Integer.valueOf(500), first.get("key-500"));
+		assertEquals(Integer.valueOf(-1), storage.load("second").getState().get("key-500"));
+	}
+
+	@Test
+	void testRestoreInPlace() {
+		Map<String, Integer> target = entries(new HashMap<>(), 250);
+		storage.save("snapshot", storage.capture(target, null));
+		target.clear();
+		target.put("other", 1);
+		storage.load("snapshot").restore(target, RestoreMode.IN_PLACE);
+		assertEquals(250, target.size());
+		assertFalse(target.containsKey("other"));
+	}
+
+	@Test
+	void testPreservesContainerTypeAndOrder() {
+		Map<String, Integer> linked = new LinkedHashMap<>();
+		for (int i = 300; i > 0; i--) {
+			linked.put("key-" + i, i);
+		}
+		storage.save("linked", new Snapshot<>(linked));
+		assertEquals(new ArrayList<>(linked.keySet()), new ArrayList<>(storage.load("linked").getState().keySet()));
+
+		TreeMap<String, Integer> sorted = new TreeMap<>(Comparator.reverseOrder());
+		entries(sorted, 250);
+		storage.save("sorted", new Snapshot<>(sorted));
+		TreeMap<String, Integer> loadedSorted = (TreeMap<String, Integer>) storage.load("sorted").getState();
+		assertEquals("key-99", loadedSorted.firstKey());
+
+		storage.save("concurrent", new Snapshot<>(entries(new ConcurrentHashMap<>(), 250)));
+		assertEquals(ConcurrentHashMap.class, storage.load("concurrent").getState().getClass());
+		storage.save("empty", new Snapshot<>(new HashMap<>()));
+		assertTrue(storage.load("empty").getState().isEmpty());
+	}
+
+	@Test
+	void testPreservesAccessOrder() {
+		Map<String, Integer> lru = new LinkedHashMap<>(16, 0.75f, true);
+		entries(lru, 250);
+		storage.save("lru", new Snapshot<>(lru));
+		Map<String, Integer> loaded = storage.load("lru").getState();
+		assertEquals(new ArrayList<>(lru.keySet()), new ArrayList<>(loaded.keySet()));
+		String first = loaded.keySet().iterator().next();
+		loaded.get(first);
+		assertEquals(first, new ArrayList<>(loaded.keySet()).get(loaded.size() - 1));
+
+		Map<String, Integer> inserted = new LinkedHashMap<>();
+		entries(inserted, 10);
+		storage.save("inserted", new Snapshot<>(inserted));
+		Map<String, Integer> loadedInserted = storage.load("inserted").getState();
+		String head = loadedInserted.keySet().iterator().next();
+		loadedInserted.get(head);
+		assertEquals(head, loadedInserted.keySet().iterator().next());
+	}
+
+	@Test
+	void testListsAndPlainObjects() {
+		PartitionedSnapshotStorage<Object> objects = new PartitionedSnapshotStorage<>(new KryoSnapshotSerializer<>(),
+				chunkStore, 100);
+		List<Integer> list = new ArrayList<>();
+		for (int i = 0; i < 1050; i++) {
+			list.add(i);
+		}
+		objects.save("list", objects.capture(list, null));
+		assertEquals(list, objects.load("list").getState());
+		objects.save("plain", new Snapshot<>("value"));
+		assertEquals("value", objects.load("plain").getState());
+		assertEquals("plain", objects.loadLastEntry().getKey());
+	}
+
+	@Test
+	void testEmptySortedMapKeepsComparator() {
+		TreeMap<String, Integer> sorted = new TreeMap<>(Comparator.reverseOrder());
+		storage.save("sorted", new Snapshot<>(sorted));
+		TreeMap<String, Integer> loaded = (TreeMap<String, Integer>) storage.load("sorted").getState();
+		assertTrue(loaded.isEmpty());
+		assertNotNull(loaded.comparator());
+	}
+
+	@Test
+	void testRejectsContainersThatCannotBeRebuilt() {
+		PartitionedSnapshotStorage<Object> objects = new PartitionedSnapshotStorage<>(new KryoSnapshotSerializer<>(),
+				chunkStore, 100);
+		assertThrows(IllegalArgumentException.class, () -> objects.capture(Arrays.asList(1, 2, 3), null));
+		assertThrows(IllegalArgumentException.class,
+				() -> objects.capture(Collections.unmodifiableList(new ArrayList<>()), null));
+		assertThrows(IllegalArgumentException.class,
+				() -> objects.save("skip", new Snapshot<>(new ConcurrentSkipListMap<>(Comparator.reverseOrder()))));
+	}
+
+	@Test
+	void testRemoveAndClearReleasePartitions() {
+		storage.save("first", new Snapshot<>(entries(new HashMap<>(), 500)));
+		storage.save("second", new Snapshot<>(entries(new HashMap<>(), 500)));
+		storage.remove("first");
+		assertEquals(500, storage.load("second").getState().size());
+		storage.clear();
+		assertEquals(0, chunkStore.getChunkCount());
+		assertNull(storage.load("second"));
+	}
+
+}
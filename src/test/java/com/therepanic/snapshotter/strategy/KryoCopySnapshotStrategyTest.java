@@ -0,0 +1,97 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.SnapshotStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class KryoCopySnapshotStrategyTest {
+
+	private final SnapshotStrategy<Object> strategy = new KryoCopySnapshotStrategy<>();
+
+	static class Node {
+
+		private String name;
+
+		private Node next;
+
+		private List<Node> children = new ArrayList<>();
+
+	}
+
+	@Test
+	void testDeepCloneSharesImmutableLeaves() {
+		List<String> original = new ArrayList<>();
+		original.add(new String("one"));
+		List<String> cloned = (List<String>) strategy.deepClone(original);
+		assertEquals(original, cloned);
+		assertNotSame(original, cloned);
+		assertSame(original.get(0), cloned.get(0));
+	}
+
+	@Test
+	void testConfiguredKryoKeepsSharingImmutables() {
+		List<Object> configured = new ArrayList<>();
+		SnapshotStrategy<Object> custom = new KryoCopySnapshotStrategy<>(configured::add, 1);
+		List<String> original = new ArrayList<>();
+		original.add(new String("one"));
+		List<String> cloned = (List<String>) custom.deepClone(original);
+		assertEquals(1, configured.size());
+		assertNotSame(original, cloned);
+		assertSame(original.get(0), cloned.get(0));
+		String root = new String("root");
+		assertSame(root, custom.deepClone(root));
+	}
+
+	@Test
+	void testDeepCloneObject() {
+		KryoSnapshotStrategyTest.TestObject original = new KryoSnapshotStrategyTest.TestObject("value", 42);
+		KryoSnapshotStrategyTest.TestObject cloned = (KryoSnapshotStrategyTest.TestObject) strategy
+			.deepClone(original);
+		assertEquals(original, cloned);
+		assertNotSame(original, cloned);
+	}
+
+	@Test
+	void testDeepCloneCyclicGraph() {
+		Node first = new Node();
+		first.name = "first";
+		Node second = new Node();
+		second.name = "second";
+		first.next = second;
+		second.next = first;
+		first.children.add(second);
+
+		Node cloned = (Node) strategy.deepClone(first);
+		assertNotSame(first, cloned);
+		assertEquals("second", cloned.next.name);
+		assertSame(cloned, cloned.next.next);
+		assertSame(cloned.next, cloned.children.get(0));
+	}
+
+}
@@ -31,6 +31,7 @@ import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class KryoSnapshotStrategyTest {
 
@@ -48,19 +49,16 @@ class KryoSnapshotStrategyTest {
 
 	@Test
 	void testDeepClonePrimitiveType() {
-		// not Integer pool
 		Integer original = 400;
 		Integer cloned = (Integer) strategy.deepClone(original);
-		assertEquals(original, cloned);
-		assertNotSame(original, cloned);
+		assertSame(original, cloned);
 	}
 
 	@Test
 	void testDeepCloneString() {
 		String original = "hello";
 		String cloned = (String) strategy.deepClone(original);
-		assertEquals(original, cloned);
-		assertNotSame(original, cloned);
+		assertSame(original, cloned);
 	}
 
 	@Test
@@ -0,0 +1,223 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.SnapshotStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodHandleSnapshotStrategyTest {
+
+	private final SnapshotStrategy<Object> strategy = new MethodHandleSnapshotStrategy<>();
+
+	static class Base {
+
+		protected long id;
+
+		protected String label;
+
+	}
+
+	static class Derived extends Base {
+
+		private int[] values;
+
+		private Derived[] siblings;
+
+		private List<String> tags = new ArrayList<>();
+
+		private Map<String, Derived> children = new HashMap<>();
+
+		private TreeSet<Integer> sorted = new TreeSet<>();
+
+		private Date created;
+
+		private Derived parent;
+
+	}
+
+	@Test
+	void testDeepCloneCopiesInheritedFields() {
+		Derived original = new Derived();
+		original.id = 7;
+		original.label = "label";
+		Derived cloned = (Derived) strategy.deepClone(original);
+		assertNotSame(original, cloned);
+		assertEquals(7, cloned.id);
+		assertSame(original.label, cloned.label);
+	}
+
+	@Test
+	void testDeepCloneArraysAndCollections() {
+		Derived original = new Derived();
+		original.values = new int[] { 1, 2, 3 };
+		original.siblings = new Derived[] { new Derived() };
+		original.tags.add("tag");
+		original.children.put("child", new Derived());
+		original.sorted.add(3);
+		original.sorted.add(1);
+		original.created = new Date(1000);
+
+		Derived cloned = (Derived) strategy.deepClone(original);
+		assertArrayEquals(original.values, cloned.values);
+		assertNotSame(original.values, cloned.values);
+		assertNotSame(original.siblings[0], cloned.siblings[0]);
+		assertEquals(original.tags, cloned.tags);
+		assertNotSame(original.tags, cloned.tags);
+		assertNotSame(original.children.get("child"), cloned.children.get("child"));
+		assertEquals(original.sorted, cloned.sorted);
+		assertEquals(original.created, cloned.created);
+		assertNotSame(original.created, cloned.created);
+	}
+
+	@Test
+	void testDeepCloneCyclicGraph() {
+		Derived parent = new Derived();
+		Derived child = new Derived();
+		child.parent = parent;
+		parent.children.put("child", child);
+		parent.parent = parent;
+
+		Derived cloned = (Derived) strategy.deepClone(parent);
+		assertSame(cloned, cloned.parent);
+		assertSame(cloned, cloned.children.get("child").parent);
+	}
+
+	static final class Price {
+
+		private final long amount;
+
+		private final String currency;
+
+		Price(long amount, String currency) {
+			this.amount = amount;
+			this.currency = currency;
+		}
+
+	}
+
+	static class Order {
+
+		private Price price;
+
+		private List<Price> history = new ArrayList<>();
+
+	}
+
+	@Test
+	void testDeepCloneSharesImmutableLeaves() {
+		Order original = new Order();
+		original.price = new Price(10, "EUR");
+		original.history.add(original.price);
+		Order cloned = (Order) strategy.deepClone(original);
+		assertNotSame(original.history, cloned.history);
+		assertSame(original.price, cloned.price);
+		assertSame(original.price, cloned.history.get(0));
+	}
+
+	static class Counter extends AtomicLong {
+
+		private String label;
+
+	}
+
+	static class Watched extends Observable {
+
+		private List<String> values = new ArrayList<>();
+
+		void touch() {
+			setChanged();
+		}
+
+	}
+
+	@Test
+	void testDeepCloneFallsBackToKryoForNonSerializableJdkSuperclass() {
+		Watched original = new Watched();
+		original.values.add("first");
+		original.touch();
+		Watched cloned = (Watched) strategy.deepClone(original);
+		assertNotSame(original, cloned);
+		assertNotSame(original.values, cloned.values);
+		assertEquals(original.values, cloned.values);
+		assertTrue(cloned.hasChanged());
+	}
+
+	@Test
+	void testDeepClonePreservesJdkContainerTypes() {
+		List<String> fixed = Arrays.asList("a", "b");
+		List<String> readOnly = Collections.unmodifiableList(new ArrayList<>(fixed));
+		LinkedHashMap<String, Integer> lru = new LinkedHashMap<>(16, 0.75f, true);
+		lru.put("first", 1);
+		lru.put("second", 2);
+		PriorityQueue<Integer> queue = new PriorityQueue<>(Comparator.reverseOrder());
+		queue.add(1);
+		queue.add(3);
+
+		List<?> fixedCopy = (List<?>) strategy.deepClone(fixed);
+		assertSame(fixed.getClass(), fixedCopy.getClass());
+		assertEquals(fixed, fixedCopy);
+		List<?> readOnlyCopy = (List<?>) strategy.deepClone(readOnly);
+		assertSame(readOnly.getClass(), readOnlyCopy.getClass());
+		@SuppressWarnings("unchecked")
+		LinkedHashMap<String, Integer> lruCopy = (LinkedHashMap<String, Integer>) strategy.deepClone(lru);
+		lruCopy.get("first");
+		assertEquals(Arrays.asList("second", "first"), new ArrayList<>(lruCopy.keySet()));
+		@SuppressWarnings("unchecked")
+		PriorityQueue<Integer> queueCopy = (PriorityQueue<Integer>) strategy.deepClone(queue);
+		assertEquals(Integer.valueOf(3), queueCopy.peek());
+	}
+
+	@Test
+	void testDeepCloneJdkTypesWithoutFieldAccess() {
+		AtomicInteger counter = new AtomicInteger(7);
+		AtomicInteger counterCopy = (AtomicInteger) strategy.deepClone(counter);
+		assertNotSame(counter, counterCopy);
+		assertEquals(7, counterCopy.get());
+
+		Counter derived = new Counter();
+		derived.set(5);
+		derived.label = "hits";
+		Counter derivedCopy = (Counter) strategy.deepClone(derived);
+		assertEquals(5, derivedCopy.get());
+		assertEquals("hits", derivedCopy.label);
+
+		assertNotNull(strategy.deepClone(new Object()));
+		assertThrows(IllegalStateException.class, () -> strategy.deepClone(Thread.currentThread()));
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.SnapshotStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class PooledKryoSnapshotStrategyTest {
+
+	private final SnapshotStrategy<Object> strategy = new PooledKryoSnapshotStrategy<>();
+
+	@Test
+	void testDeepCloneList() {
+		List<String> original = new ArrayList<>();
+		original.add("one");
+		original.add("two");
+		List<String> cloned = (List<String>) strategy.deepClone(original);
+		assertEquals(original, cloned);
+		assertNotSame(original, cloned);
+	}
+
+	@Test
+	void testDeepCloneReusesBuffers() {
+		for (int i = 0; i < 100; i++) {
+			List<Integer> original = new ArrayList<>();
+			for (int j = 0; j <= i * 50; j++) {
+				original.add(j);
+			}
+			assertEquals(original, strategy.deepClone(original));
+		}
+	}
+
+	@Test
+	void testDeepCloneFromManyThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				int value = i;
+				results.add(executor.submit(() -> {
+					KryoSnapshotStrategyTest.TestObject original = new KryoSnapshotStrategyTest.TestObject("v" + value,
+							value);
+					return original.equals(strategy.deepClone(original));
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(true, result.get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.therepanic.snapshotter.strategy;
+
+import com.therepanic.snapshotter.DefaultSnapshotter;
+import com.therepanic.snapshotter.storage.MemorySnapshotStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharingSnapshotStrategyTest {
+
+	private final SharingSnapshotStrategy<Document> strategy = new SharingSnapshotStrategy<>();
+
+	static class Section {
+
+		private String title;
+
+		private int[] counters = new int[3];
+
+		Section() {
+		}
+
+		Section(String title) {
+			this.title = title;
+		}
+
+	}
+
+	static class Document {
+
+		private long version;
+
+		private List<Section> sections = new ArrayList<>();
+
+		private Map<String, Section> index = new LinkedHashMap<>();
+
+		private Document parent;
+
+	}
+
+	private static Document document() {
+		Document document = new Document();
+		for (int i = 0; i < 3; i++) {
+			Section section = new Section("section-" + i);
+			document.sections.add(section);
+			document.index.put(section.title, section);
+		}
+		return document;
+	}
+
+	@Test
+	void testUnchangedGraphIsReused() {
+		Document live = document();
+		Document first = strategy.deepClone(live);
+		assertNotSame(live.sections, first.sections);
+		assertSame(first, strategy.deepClone(live));
+	}
+
+	@Test
+	void testOnlyChangedSpineIsCopied() {
+		Document live = document();
+		Document first = strategy.deepClone(live);
+		live.sections.get(1).counters[0] = 5;
+		Document second = strategy.deepClone(live);
+		assertNotSame(first, second);
+		assertNotSame(first.sections, second.sections);
+		assertSame(first.sections.get(0), second.sections.get(0));
+		assertSame(first.sections.get(2), second.sections.get(2));
+		assertNotSame(first.sections.get(1), second.sections.get(1));
+		assertSame(second.sections.get(1), second.index.get("section-1"));
+		assertSame(first.index.get("section-0"), second.index.get("section-0"));
+		assertEquals(0, first.sections.get(1).counters[0]);
+		assertEquals(5, second.sections.get(1).counters[0]);
+	}
+
+	@Test
+	void testStructuralChangesAndPrimitiveFields() {
+		Document live = document();
+		Document first = strategy.deepClone(live);
+		live.sections.add(new Section("extra"));
+		Document second = strategy.deepClone(live);
+		assertEquals(3, first.sections.size());
+		assertEquals(4, second.sections.size());
+		assertSame(first.sections.get(0), second.sections.get(0));
+		assertSame(first.index, second.index);
+		live.version = 2;
+		Document third = strategy.deepClone(live);
+		assertEquals(2, third.version);
+		assertSame(second.sections, third.sections);
+	}
+
+	@Test
+	void testAliasedObjectsAreNotShared() {
+		Document live = document();
+		Document first = strategy.deepClone(live);
+		live.sections = first.sections;
+		Document second = strategy.deepClone(live);
+		assertNotSame(first.sections, second.sections);
+		assertNotSame(live.sections, second.sections);
+	}
+
+	@Test
+	void testEqualLiveObjectsDoNotCollapseOntoOneCopy() {
+		Document live = document();
+		Document first = strategy.deepClone(live);
+		assertSame(first.sections.get(0), first.index.get("section-0"));
+		live.index.put("section-0", new Section("section-0"));
+		Document second = strategy.deepClone(live);
+		assertSame(first.sections.get(0), second.sections.get(0));
+		assertNotSame(second.sections.get(0), second.index.get("section-0"));
+		second.index.get("section-0").title = "mutated";
+		assertEquals("section-0", second.sections.get(0).title);
+	}
+
+	@Test
+	void testReplacingRestoreDoesNotAliasSharedSubtrees() {
+		Document live = document();
+		DefaultSnapshotter<Document> snapshotter = new DefaultSnapshotter<>(live, new MemorySnapshotStorage<>(),
+				new SharingSnapshotStrategy<>(), new ArrayList<>());
+		snapshotter.save("first");
+		snapshotter.save("second");
+		snapshotter.restore("first");
+		live.sections.get(0).title = "mutated";
+		snapshotter.restore("second");
+		assertEquals("section-0", live.sections.get(0).title);
+	}
+
+	@Test
+	void testCyclesFallBackToIndependentCopy() {
+		Document live = document();
+		live.parent = live;
+		Document first = strategy.deepClone(live);
+		Document second = strategy.deepClone(live);
+		assertSame(first, first.parent);
+		assertSame(second, second.parent);
+		assertNotSame(first, second);
+		strategy.reset();
+		assertNotSame(second, strategy.deepClone(live));
+	}
+
+}